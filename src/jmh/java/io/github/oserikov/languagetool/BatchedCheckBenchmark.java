@@ -0,0 +1,68 @@
+package io.github.oserikov.languagetool;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of {@link RowProcessor} with {@link BatchingSuggestionSource} against the batch size,
+ * {@code batchSize=1} being the one sentence per check path.
+ * <p>
+ * Every invocation processes {@value #ROWS} distinct rows of one language: the sample rows with a row number
+ * appended to the sentence, so equal sentences in a batch don't make it cheaper.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BatchedCheckBenchmark {
+    private static final int CONTEXT_LENGTH = 3;
+    private static final int ROWS = 64;
+
+    @Param({"MORFOLOGIK_RULE_EN_US", "GERMAN_SPELLER_RULE", "FR_SPELLING_RULE", "MORFOLOGIK_RULE_RU_RU", "MORFOLOGIK_RULE_ES"})
+    public String ruleId;
+
+    @Param({"1", "4", "16", "64"})
+    public int batchSize;
+
+    private RowProcessor processor;
+    private final List<InputRow> rows = new ArrayList<>();
+    private final FeaturesBatch batch = new FeaturesBatch();
+
+    @Setup
+    public void setUp() throws IOException {
+        List<InputRow> sample = SampleCorrections.load(ruleId);
+        for (int i = 0; i < ROWS; i++) {
+            InputRow row = sample.get(i % sample.size());
+            String suffix = " #" + i;
+            rows.add(new InputRow(i + 1, row.getSentence() + suffix, row.getCorrection() + suffix, row.getCovered(),
+                    row.getReplacement(), row.getSuggestionPos(), row.getRuleId(), row.getLanguage(), -1));
+        }
+
+        LanguageRegistry languages = new LanguageRegistry(System.getProperty("ngrams_folder", "ngrams"));
+        languages.warmUp(Collections.singleton(ruleId));
+        processor = new RowProcessor(new BatchingSuggestionSource(languages), CONTEXT_LENGTH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public FeaturesBatch processRows() throws IOException {
+        batch.clear();
+        for (int from = 0; from < ROWS; from += batchSize) {
+            List<InputRow> chunk = rows.subList(from, Math.min(from + batchSize, ROWS));
+            if (batchSize > 1) {
+                processor.prefetch(chunk);
+            }
+            for (InputRow row : chunk) {
+                processor.processRow(row, batch);
+            }
+        }
+        return batch;
+    }
+}
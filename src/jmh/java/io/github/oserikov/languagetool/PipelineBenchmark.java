@@ -0,0 +1,101 @@
+package io.github.oserikov.languagetool;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The whole {@link ParallelPipeline} on a mixed-language stream: the sample rows of all the languages
+ * in random order, as in the logs. Compares in-order processing ({@code affinityWindow=0})
+ * with language-affine scheduling.
+ * <p>
+ * The workers' languages are created and warmed up once per trial, so only the steady state is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class PipelineBenchmark {
+    private static final int CONTEXT_LENGTH = 3;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    @Param({"4"})
+    public int workers;
+
+    @Param({"0", "64", "256"})
+    public int affinityWindow;
+
+    @Param({"5000"})
+    public int rowsCount;
+
+    private final List<RowProcessor> processors = new ArrayList<>();
+    private final AtomicInteger nextProcessor = new AtomicInteger();
+    private final List<InputRow> stream = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        List<InputRow> sample = SampleCorrections.load();
+        Set<String> ruleIds = new TreeSet<>();
+        for (InputRow row : sample) {
+            ruleIds.add(row.getRuleId());
+        }
+
+        Random random = new Random(42);
+        for (int i = 1; i <= rowsCount; i++) {
+            InputRow row = sample.get(random.nextInt(sample.size()));
+            stream.add(new InputRow(i, row.getSentence(), row.getCorrection(), row.getCovered(), row.getReplacement(),
+                    row.getSuggestionPos(), row.getRuleId(), row.getLanguage(), -1));
+        }
+
+        for (int w = 0; w < workers; w++) {
+            LanguageRegistry languages = new LanguageRegistry(System.getProperty("ngrams_folder", "ngrams"));
+            languages.warmUp(ruleIds);
+            processors.add(new RowProcessor(new FullCheckSuggestionSource(languages), CONTEXT_LENGTH));
+        }
+    }
+
+    /**
+     * @return rows read, the score is the time per {@code rowsCount} rows
+     */
+    @Benchmark
+    public int run() throws Exception {
+        ParallelPipeline pipeline = new ParallelPipeline(workers, QUEUE_CAPACITY, 1, Integer.MAX_VALUE,
+                () -> processors.get(nextProcessor.getAndIncrement() % workers));
+        pipeline.setAffinityWindow(affinityWindow);
+
+        int[] next = new int[1];
+        InputSource source = new InputSource() {
+            @Override
+            public InputRow next() {
+                return next[0] < stream.size() ? stream.get(next[0]++) : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        FeaturesWriter discard = new FeaturesWriter() {
+            @Override
+            public void write(FeaturesBatch batch) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        return pipeline.run(source, discard);
+    }
+}
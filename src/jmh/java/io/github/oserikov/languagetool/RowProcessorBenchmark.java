@@ -0,0 +1,81 @@
+package io.github.oserikov.languagetool;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RowProcessor#processRow(InputRow, FeaturesBatch)} with a real JLanguageTool, on the sample rows of one language.
+ * Every invocation handles one row into a reused batch, the rows are taken in turn.
+ * <p>
+ * {@link #processRowKnownSuggestions()} replays the suggestions LanguageTool gave for the row, so the gc profiler's
+ * {@code gc.alloc.rate.norm} shows what the processor itself allocates per row.
+ * <p>
+ * The n-gram rules are only active if {@code -jvmArgsAppend -Dngrams_folder=...} points to the n-gram data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RowProcessorBenchmark {
+    private static final int CONTEXT_LENGTH = 3;
+
+    @Param({"MORFOLOGIK_RULE_EN_US", "GERMAN_SPELLER_RULE", "FR_SPELLING_RULE", "MORFOLOGIK_RULE_RU_RU", "MORFOLOGIK_RULE_ES"})
+    public String ruleId;
+
+    private RowProcessor processor;
+    private RowProcessor knownSuggestionsProcessor;
+    private final FeaturesBatch batch = new FeaturesBatch();
+    private InputRow[] rows;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        rows = SampleCorrections.load(ruleId).toArray(new InputRow[0]);
+
+        LanguageRegistry languages = new LanguageRegistry(System.getProperty("ngrams_folder", "ngrams"));
+        languages.warmUp(Collections.singleton(ruleId));
+        SuggestionSource fullCheck = new FullCheckSuggestionSource(languages);
+        processor = new RowProcessor(fullCheck, CONTEXT_LENGTH);
+
+        Map<String, List<String>> knownSuggestions = new HashMap<>();
+        SuggestionSource recorder = (ruleId, sentence, errorStartIdx, covered, leftContext, rightContext) -> {
+            List<String> suggestions = fullCheck.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext);
+            knownSuggestions.put(sentence, suggestions);
+            return suggestions;
+        };
+        for (InputRow row : rows) {
+            new RowProcessor(recorder, CONTEXT_LENGTH).processRow(row, new FeaturesBatch());
+        }
+        knownSuggestionsProcessor = new RowProcessor(
+                (ruleId, sentence, errorStartIdx, covered, leftContext, rightContext) -> knownSuggestions.get(sentence),
+                CONTEXT_LENGTH);
+    }
+
+    private InputRow nextRow() {
+        InputRow row = rows[next];
+        next = next + 1 == rows.length ? 0 : next + 1;
+        return row;
+    }
+
+    @Benchmark
+    public FeaturesBatch processRow() throws IOException {
+        batch.clear();
+        processor.processRow(nextRow(), batch);
+        return batch;
+    }
+
+    @Benchmark
+    public FeaturesBatch processRowKnownSuggestions() throws IOException {
+        batch.clear();
+        knownSuggestionsProcessor.processRow(nextRow(), batch);
+        return batch;
+    }
+}
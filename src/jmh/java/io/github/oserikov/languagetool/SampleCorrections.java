@@ -0,0 +1,48 @@
+package io.github.oserikov.languagetool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows of the sample corrections dump bundled with the benchmarks, in the same format as the real dump.
+ */
+class SampleCorrections {
+    static final String RESOURCE = "/sample-corrections.tsv";
+
+    /**
+     * @return all the rows, in file order
+     */
+    static List<InputRow> load() throws IOException {
+        List<InputRow> rows = new ArrayList<>();
+        try (InputStream in = SampleCorrections.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IOException(RESOURCE + " not found");
+            }
+            TsvRecordReader reader = new TsvRecordReader(in, 0);
+            String[] fields;
+            int rowNum = 0;
+            while ((fields = reader.next()) != null) {
+                rows.add(TsvInputSource.toInputRow(++rowNum, fields, reader.offset()));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the rows with the given rule id
+     */
+    static List<InputRow> load(String ruleId) throws IOException {
+        List<InputRow> rows = new ArrayList<>();
+        for (InputRow row : load()) {
+            if (row.getRuleId().equals(ruleId)) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new IOException("no sample rows for " + ruleId);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.oserikov.languagetool;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The string helpers {@link RowProcessor} runs before asking LanguageTool, on the sample rows of one language.
+ * Every invocation handles one row, the rows are taken in turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+    private static final int CONTEXT_LENGTH = 3;
+
+    @Param({"MORFOLOGIK_RULE_EN_US", "GERMAN_SPELLER_RULE", "FR_SPELLING_RULE", "MORFOLOGIK_RULE_RU_RU", "MORFOLOGIK_RULE_ES"})
+    public String ruleId;
+
+    private InputRow[] rows;
+    private int[] differenceIdxs;
+    private int[] errorStartIdxs;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<InputRow> sample = SampleCorrections.load(ruleId);
+        rows = sample.toArray(new InputRow[0]);
+        differenceIdxs = new int[rows.length];
+        errorStartIdxs = new int[rows.length];
+        for (int r = 0; r < rows.length; r++) {
+            differenceIdxs[r] = Utils.firstDifferencePosition(rows[r].getSentence(), rows[r].getCorrection());
+            if (differenceIdxs[r] < 0) {
+                throw new IllegalStateException("sample row " + rows[r].getRowNum() + " of " + ruleId + " has no difference: " + rows[r].getSentence());
+            }
+            errorStartIdxs[r] = Utils.startOfErrorString(rows[r].getSentence(), rows[r].getCovered(), differenceIdxs[r]);
+            // a row the pipeline would skip would make the context benchmarks throw instead of measure
+            if (errorStartIdxs[r] < 0) {
+                throw new IllegalStateException("sample row " + rows[r].getRowNum() + " of " + ruleId + " does not cover its difference: " + rows[r].getCovered());
+            }
+        }
+    }
+
+    private int nextRow() {
+        int r = next;
+        next = r + 1 == rows.length ? 0 : r + 1;
+        return r;
+    }
+
+    @Benchmark
+    public int firstDifferencePosition() {
+        InputRow row = rows[nextRow()];
+        return Utils.firstDifferencePosition(row.getSentence(), row.getCorrection());
+    }
+
+    @Benchmark
+    public int startOfErrorString() {
+        int r = nextRow();
+        return Utils.startOfErrorString(rows[r].getSentence(), rows[r].getCovered(), differenceIdxs[r]);
+    }
+
+    @Benchmark
+    public Object extractContext() {
+        int r = nextRow();
+        return Utils.extractContext(rows[r].getSentence(), rows[r].getCovered(), errorStartIdxs[r], CONTEXT_LENGTH);
+    }
+
+    /**
+     * The regex based context extraction {@link #extractContext()} replaced, for comparison.
+     */
+    @Benchmark
+    public void regexContext(Blackhole blackhole) {
+        int r = nextRow();
+        InputRow row = rows[r];
+        blackhole.consume(Utils.getMaximalPossibleLeftContext(row.getSentence(), errorStartIdxs[r], row.getCovered(), CONTEXT_LENGTH));
+        blackhole.consume(Utils.getMaximalPossibleRightContext(row.getSentence(), errorStartIdxs[r], row.getCovered(), CONTEXT_LENGTH));
+    }
+}
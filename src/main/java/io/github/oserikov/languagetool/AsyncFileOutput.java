@@ -0,0 +1,319 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream which writes to the file on a thread of its own.
+ * <p>
+ * The bytes are collected in large direct buffers, a full buffer goes to the writer thread and the stream
+ * goes on with a free one. The writer thread takes all the buffers queued meanwhile and writes them with
+ * one gathering write (or compresses them and writes the result once), so the file gets a few large writes.
+ * There are only {@code buffers} buffers: when all of them wait to be written, the producer waits too.
+ * <p>
+ * With gzip every {@link #flush()} ends a gzip member, so the file is a valid gzip file (of concatenated members)
+ * up to {@link #length()} after it, and can be cut there and appended to.
+ */
+@Slf4j
+public class AsyncFileOutput extends OutputStream {
+    private static final int MAX_GROUP = 64;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final FileChannel channel;
+    private final boolean gzip;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<Object> filled;
+    private final Thread thread;
+    private ByteBuffer current;
+    private boolean closed = false;
+
+    private volatile long length;
+    private volatile IOException error;
+
+    // the writer thread's
+    private final List<ByteBuffer> group = new ArrayList<>(MAX_GROUP);
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] input;
+    private final byte[] deflated;
+    private final ByteBuffer compressed;
+    private long memberSize = 0;
+    private boolean inMember = false;
+
+    /**
+     * @param channel written from its position on
+     * @param buffers at least 2
+     */
+    public AsyncFileOutput(FileChannel channel, boolean gzip, int bufferSize, int buffers) throws IOException {
+        this.channel = channel;
+        this.gzip = gzip;
+        this.length = channel.position();
+
+        buffers = Math.max(2, buffers);
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int b = 0; b < buffers; b++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.filled = new ArrayBlockingQueue<>(buffers + 1);
+        this.current = free.poll();
+
+        // Deflater only takes arrays before Java 11, the direct buffers are copied
+        this.deflater = gzip ? new Deflater(Deflater.BEST_SPEED, true) : null;
+        this.input = gzip ? new byte[bufferSize] : null;
+        this.deflated = gzip ? new byte[1 << 16] : null;
+        this.compressed = gzip ? ByteBuffer.allocateDirect(bufferSize) : null;
+
+        this.thread = new Thread(this::run, "output-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!current.hasRemaining()) {
+            handOff();
+        }
+        current.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!current.hasRemaining()) {
+                handOff();
+            }
+            int n = Math.min(len, current.remaining());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void handOff() throws IOException {
+        checkError();
+        current.flip();
+        try {
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted when waiting for a free output buffer");
+        }
+    }
+
+    /**
+     * Waits until everything written so far is in the file, and ends the gzip member.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (current.position() > 0) {
+            handOff();
+        }
+        Marker marker = new Marker(false);
+        try {
+            filled.put(marker);
+            marker.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted when flushing the output");
+        }
+        checkError();
+    }
+
+    /**
+     * @return bytes in the file, all the bytes written before the last {@link #flush()} included
+     */
+    public long length() {
+        return length;
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("issue when writing the output", error);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            try {
+                filled.put(new Marker(true));
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private void run() {
+        List<Object> items = new ArrayList<>(MAX_GROUP);
+        try {
+            while (true) {
+                items.add(filled.take());
+                filled.drainTo(items, MAX_GROUP - 1);
+                for (Object item : items) {
+                    if (item instanceof ByteBuffer) {
+                        group.add((ByteBuffer) item);
+                        continue;
+                    }
+                    commit();
+                    Marker marker = (Marker) item;
+                    if (error == null) {
+                        try {
+                            endMember();
+                        } catch (IOException e) {
+                            fail(e);
+                        }
+                    }
+                    marker.done.countDown();
+                    if (marker.close) {
+                        return;
+                    }
+                }
+                commit();
+                items.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Writes the collected buffers and gives them back, after an error they are only given back.
+     */
+    private void commit() {
+        if (group.isEmpty()) {
+            return;
+        }
+        if (error == null) {
+            try {
+                if (gzip) {
+                    for (ByteBuffer buffer : group) {
+                        deflate(buffer);
+                    }
+                    writeCompressed();
+                } else {
+                    ByteBuffer[] buffers = group.toArray(new ByteBuffer[0]);
+                    long remaining = 0;
+                    for (ByteBuffer buffer : buffers) {
+                        remaining += buffer.remaining();
+                    }
+                    while (remaining > 0) {
+                        long written = channel.write(buffers);
+                        remaining -= written;
+                        length += written;
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        for (ByteBuffer buffer : group) {
+            buffer.clear();
+            free.offer(buffer);
+        }
+        group.clear();
+    }
+
+    private void fail(IOException e) {
+        log.error("Error! issue when writing the output.", e);
+        error = e;
+    }
+
+    private void deflate(ByteBuffer buffer) throws IOException {
+        if (!inMember) {
+            putCompressed(GZIP_HEADER, 0, GZIP_HEADER.length);
+            inMember = true;
+        }
+        int n = buffer.remaining();
+        buffer.get(input, 0, n);
+        crc.update(input, 0, n);
+        memberSize += n;
+        deflater.setInput(input, 0, n);
+        while (!deflater.needsInput()) {
+            putCompressed(deflated, 0, deflater.deflate(deflated, 0, deflated.length));
+        }
+    }
+
+    private void endMember() throws IOException {
+        if (!gzip || !inMember) {
+            return;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            putCompressed(deflated, 0, deflater.deflate(deflated, 0, deflated.length));
+        }
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, crc.getValue());
+        writeIntLE(trailer, 4, memberSize);
+        putCompressed(trailer, 0, trailer.length);
+        writeCompressed();
+
+        deflater.reset();
+        crc.reset();
+        memberSize = 0;
+        inMember = false;
+    }
+
+    private static void writeIntLE(byte[] b, int off, long value) {
+        for (int i = 0; i < 4; i++) {
+            b[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void putCompressed(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!compressed.hasRemaining()) {
+                writeCompressed();
+            }
+            int n = Math.min(len, compressed.remaining());
+            compressed.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void writeCompressed() throws IOException {
+        compressed.flip();
+        while (compressed.hasRemaining()) {
+            length += channel.write(compressed);
+        }
+        compressed.clear();
+    }
+
+    private static class Marker {
+        private final boolean close;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Marker(boolean close) {
+            this.close = close;
+        }
+    }
+}
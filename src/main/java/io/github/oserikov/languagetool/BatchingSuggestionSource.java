@@ -0,0 +1,204 @@
+package io.github.oserikov.languagetool;
+
+import org.languagetool.AnalyzedSentence;
+import org.languagetool.JLanguageTool;
+import org.languagetool.rules.Rule;
+import org.languagetool.rules.RuleMatch;
+import org.languagetool.rules.TextLevelRule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Full check of many sentences with one JLanguageTool call, to pay the per call overhead once per batch.
+ * <p>
+ * The sentences announced by {@link #prefetch} are joined into one text, separated by empty lines so that
+ * LanguageTool treats each of them as a paragraph of its own, and analyzed once the first time the suggestions for
+ * one of them are needed. The matches are mapped back to the sentences by their offsets and filtered exactly like
+ * {@link FullCheckSuggestionSource} does. Sentences which were not announced are checked one by one.
+ * <p>
+ * The sentence level rules run on every analyzed sentence. The text level rules would see the neighbouring
+ * sentences in the joined text, so they run on the analyzed sentences of every announced sentence alone, as in
+ * the one by one check.
+ */
+public class BatchingSuggestionSource implements SuggestionSource {
+    private static final String SEPARATOR = "\n\n";
+
+    private final LanguageRegistry languages;
+    private final Metrics metrics;
+    private final SuggestionSource single;
+    private final Map<String, Set<String>> pending = new HashMap<>();
+    private final Map<String, Map<String, SentenceMatches>> checked = new HashMap<>();
+
+    public BatchingSuggestionSource(LanguageRegistry languages) {
+        this(languages, new Metrics());
+    }
+
+    /**
+     * @param metrics records every check, a batch is one check of its rule id
+     */
+    public BatchingSuggestionSource(LanguageRegistry languages, Metrics metrics) {
+        this.languages = languages;
+        this.metrics = metrics;
+        this.single = new TimingSuggestionSource(new FullCheckSuggestionSource(languages), metrics);
+    }
+
+    @Override
+    public void prefetch(List<SuggestionRequest> requests) {
+        pending.clear();
+        checked.clear();
+        for (SuggestionRequest request : requests) {
+            pending.computeIfAbsent(request.getRuleId(), ruleId -> new LinkedHashSet<>()).add(request.getSentence());
+        }
+    }
+
+    @Override
+    public List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                                    String leftContext, String rightContext) throws IOException {
+        SentenceMatches matches = checkedMatches(ruleId, sentence);
+        if (matches == null) {
+            Set<String> sentences = pending.get(ruleId);
+            if (sentences != null && sentences.contains(sentence)) {
+                pending.remove(ruleId);
+                checkAll(ruleId, sentences);
+                matches = checkedMatches(ruleId, sentence);
+            }
+        }
+        if (matches == null) {
+            return single.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext);
+        }
+
+        List<String> suggestions = new ArrayList<>();
+        for (SentenceMatch match : matches.matches) {
+            if (match.fromPos == errorStartIdx && match.toPos == errorStartIdx + covered.length()) {
+                suggestions.addAll(match.suggestions);
+            }
+        }
+        return suggestions;
+    }
+
+    private SentenceMatches checkedMatches(String ruleId, String sentence) {
+        Map<String, SentenceMatches> bySentence = checked.get(ruleId);
+        return bySentence == null ? null : bySentence.get(sentence);
+    }
+
+    private void checkAll(String ruleId, Set<String> sentences) throws IOException {
+        JLanguageTool lt = languages.get(ruleId);
+        StringBuilder text = new StringBuilder();
+        int[] offsets = new int[sentences.size()];
+        SentenceMatches[] sentenceMatches = new SentenceMatches[sentences.size()];
+        Map<String, SentenceMatches> bySentence = new HashMap<>();
+        int s = 0;
+        for (String sentence : sentences) {
+            if (s > 0) {
+                text.append(SEPARATOR);
+            }
+            offsets[s] = text.length();
+            sentenceMatches[s] = new SentenceMatches();
+            bySentence.put(sentence, sentenceMatches[s]);
+            text.append(sentence);
+            s++;
+        }
+
+        long start = System.nanoTime();
+        List<Rule> sentenceLevelRules = new ArrayList<>();
+        List<TextLevelRule> textLevelRules = new ArrayList<>();
+        for (Rule rule : lt.getAllActiveRules()) {
+            if (rule instanceof TextLevelRule) {
+                textLevelRules.add((TextLevelRule) rule);
+            } else {
+                sentenceLevelRules.add(rule);
+            }
+        }
+
+        // the sentences are split, tokenized, tagged and disambiguated once, for the rules of both kinds
+        List<List<AnalyzedSentence>> rowSentences = new ArrayList<>();
+        int[] rowStarts = new int[sentences.size()];
+        for (s = 0; s < sentences.size(); s++) {
+            rowSentences.add(new ArrayList<>());
+        }
+        int pos = 0;
+        for (AnalyzedSentence analyzedSentence : lt.analyzeText(text.toString())) {
+            String analyzedText = analyzedSentence.getText();
+            int row = rowOf(offsets, pos + leadingWhitespace(analyzedText));
+            if (row >= 0) {
+                if (rowSentences.get(row).isEmpty()) {
+                    rowStarts[row] = pos;
+                }
+                rowSentences.get(row).add(analyzedSentence);
+                // the positions are relative to the analyzed sentence
+                List<RuleMatch> matches = lt.checkAnalyzedSentence(JLanguageTool.ParagraphHandling.ONLYNONPARA,
+                        sentenceLevelRules, analyzedSentence);
+                for (RuleMatch match : matches) {
+                    sentenceMatches[row].add(match, offsets[row] - pos);
+                }
+            }
+            pos += analyzedText.length();
+        }
+
+        for (s = 0; s < sentenceMatches.length; s++) {
+            List<AnalyzedSentence> slice = rowSentences.get(s);
+            if (!slice.isEmpty()) {
+                // the positions are relative to the first sentence of the slice
+                for (TextLevelRule rule : textLevelRules) {
+                    for (RuleMatch match : rule.match(slice)) {
+                        sentenceMatches[s].add(match, offsets[s] - rowStarts[s]);
+                    }
+                }
+            }
+            // in the order of the one by one check, which sorts the matches of both kinds by position
+            sentenceMatches[s].matches.sort(Comparator.comparingInt(match -> match.fromPos));
+        }
+        metrics.checked(ruleId, System.nanoTime() - start);
+        checked.put(ruleId, bySentence);
+    }
+
+    /**
+     * The index of the sentence the position of the joined text is in, -1 before the first one.
+     */
+    private static int rowOf(int[] offsets, int position) {
+        int idx = Arrays.binarySearch(offsets, position);
+        // not an exact hit: the position is inside the sentence before the insertion point
+        return idx < 0 ? -idx - 2 : idx;
+    }
+
+    private static int leadingWhitespace(String text) {
+        int i = 0;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        // a sentence of whitespace only is placed by its start
+        return i == text.length() ? 0 : i;
+    }
+
+    private static class SentenceMatches {
+        private final List<SentenceMatch> matches = new ArrayList<>();
+
+        private void add(RuleMatch match, int offset) {
+            matches.add(new SentenceMatch(match.getFromPos() - offset, match.getToPos() - offset,
+                    match.getSuggestedReplacements()));
+        }
+    }
+
+    /**
+     * A match with its positions in its own sentence.
+     */
+    private static class SentenceMatch {
+        private final int fromPos;
+        private final int toPos;
+        private final List<String> suggestions;
+
+        private SentenceMatch(int fromPos, int toPos, List<String> suggestions) {
+            this.fromPos = fromPos;
+            this.toPos = toPos;
+            this.suggestions = suggestions;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.oserikov.languagetool;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Remembers the suggestions of the wrapped source, the same sentences and misspellings repeat a lot in the logs.
+ * <p>
+ * The first level is keyed by the rule id, the sentence and the error span. The second level is keyed by the rule id,
+ * the covered token and its left/right context, and is only used for the rules listed as token level
+ * (spellers whose suggestions don't depend on the rest of the sentence).
+ * The {@link Caches} are shared by all the workers, the wrapped source is not.
+ */
+public class CachingSuggestionSource implements SuggestionSource {
+    private final Caches caches;
+    private final SuggestionSource source;
+
+    public CachingSuggestionSource(Caches caches, SuggestionSource source) {
+        this.caches = caches;
+        this.source = source;
+    }
+
+    @Override
+    public List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                                    String leftContext, String rightContext) throws IOException {
+        SentenceKey sentenceKey = new SentenceKey(ruleId, sentence, errorStartIdx, covered);
+        List<String> suggestions = caches.bySentence.get(sentenceKey);
+        if (suggestions != null) {
+            return suggestions;
+        }
+
+        TokenKey tokenKey = caches.isTokenLevel(ruleId) ? new TokenKey(ruleId, covered, leftContext, rightContext) : null;
+        if (tokenKey != null) {
+            suggestions = caches.byToken.get(tokenKey);
+        }
+
+        if (suggestions == null) {
+            suggestions = Collections.unmodifiableList(source.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext));
+            if (tokenKey != null) {
+                caches.byToken.put(tokenKey, suggestions);
+            }
+        }
+        caches.bySentence.put(sentenceKey, suggestions);
+        return suggestions;
+    }
+
+    /**
+     * Announces only the rows whose suggestions are not cached, the cached ones are not checked again.
+     */
+    @Override
+    public void prefetch(List<SuggestionRequest> requests) {
+        List<SuggestionRequest> uncached = new ArrayList<>(requests.size());
+        for (SuggestionRequest request : requests) {
+            String ruleId = request.getRuleId();
+            if (caches.bySentence.contains(new SentenceKey(ruleId, request.getSentence(), request.getErrorStartIdx(), request.getCovered()))) {
+                continue;
+            }
+            if (caches.isTokenLevel(ruleId) && caches.byToken.contains(
+                    new TokenKey(ruleId, request.getCovered(), request.getLeftContext(), request.getRightContext()))) {
+                continue;
+            }
+            uncached.add(request);
+        }
+        source.prefetch(uncached);
+    }
+
+    public static class Caches {
+        private final LruCache<SentenceKey, List<String>> bySentence;
+        private final LruCache<TokenKey, List<String>> byToken;
+        private final List<String> tokenLevelRulePrefixes;
+
+        /**
+         * @param tokenLevelRulePrefixes rule ids starting with one of these use the second, token level cache
+         */
+        public Caches(int maxSize, List<String> tokenLevelRulePrefixes) {
+            this.bySentence = new LruCache<>(maxSize);
+            this.byToken = new LruCache<>(maxSize);
+            this.tokenLevelRulePrefixes = tokenLevelRulePrefixes;
+        }
+
+        private boolean isTokenLevel(String ruleId) {
+            for (String prefix : tokenLevelRulePrefixes) {
+                if (ruleId.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "sentence cache: " + bySentence + "; token cache: " + byToken;
+        }
+    }
+
+    @Value
+    private static class SentenceKey {
+        String ruleId;
+        String sentence;
+        int errorStartIdx;
+        String covered;
+    }
+
+    @Value
+    private static class TokenKey {
+        String ruleId;
+        String covered;
+        String leftContext;
+        String rightContext;
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.oserikov.languagetool;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * How far the extraction got: everything before {@code inputOffset} is processed
+ * and its features are in the first {@code outputLength} bytes of the output,
+ * or of its part {@code outputPart} and the parts before, see {@link FeaturesOutput}.
+ * The rows quarantined before it are the first {@code quarantineLength} bytes of the quarantine file,
+ * see {@link QuarantineWriter}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class Checkpoint {
+    private final long inputOffset;
+    private final int rowNum;
+    private final long outputLength;
+    private final int outputPart;
+    private final int errorsCnt;
+    private final long quarantineLength;
+
+    public Checkpoint(long inputOffset, int rowNum, long outputLength, int outputPart, int errorsCnt) {
+        this(inputOffset, rowNum, outputLength, outputPart, errorsCnt, 0);
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and renames it, so the file is always either the old or the new one.
+     */
+    public void save(String fileName) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("input_offset", Long.toString(inputOffset));
+        properties.setProperty("row_num", Integer.toString(rowNum));
+        properties.setProperty("output_length", Long.toString(outputLength));
+        properties.setProperty("output_part", Integer.toString(outputPart));
+        properties.setProperty("errors_cnt", Integer.toString(errorsCnt));
+        properties.setProperty("quarantine_length", Long.toString(quarantineLength));
+
+        Utils.writeAtomically(fileName, out -> properties.store(out, null));
+    }
+
+    /**
+     * @return the saved checkpoint or null if there is none
+     */
+    public static Checkpoint load(String fileName) throws IOException {
+        if (!Files.exists(Paths.get(fileName))) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(fileName)) {
+            properties.load(in);
+        }
+        return new Checkpoint(
+                Long.parseLong(properties.getProperty("input_offset")),
+                Integer.parseInt(properties.getProperty("row_num")),
+                Long.parseLong(properties.getProperty("output_length")),
+                // checkpoints of the one file outputs have no part
+                Integer.parseInt(properties.getProperty("output_part", "0")),
+                Integer.parseInt(properties.getProperty("errors_cnt")),
+                // checkpoints of the runs without a row timeout have no quarantine file
+                Long.parseLong(properties.getProperty("quarantine_length", "0")));
+    }
+}
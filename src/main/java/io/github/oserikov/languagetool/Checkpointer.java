@@ -0,0 +1,82 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+/**
+ * Saves a {@link Checkpoint} every {@code frequency} written rows, and every {@code intervalMs} milliseconds
+ * while rows are written. Called by the writer in input order, after the row's features were handed to the output.
+ */
+@Slf4j
+public class Checkpointer {
+    private final String fileName;
+    private final int frequency;
+    private final FeaturesOutput output;
+    private final QuarantineWriter quarantine;
+    private final long intervalMs;
+    private int rowsSinceCheckpoint = 0;
+    private long lastSaveMs = System.currentTimeMillis();
+    private InputRow lastRow;
+    private int lastErrorsCnt;
+
+    public Checkpointer(String fileName, int frequency, FeaturesOutput output) {
+        this(fileName, frequency, 0, output);
+    }
+
+    /**
+     * @param intervalMs 0 to save only every {@code frequency} rows
+     */
+    public Checkpointer(String fileName, int frequency, long intervalMs, FeaturesOutput output) {
+        this(fileName, frequency, intervalMs, output, null);
+    }
+
+    /**
+     * @param quarantine the quarantine file whose length is saved too, may be null
+     */
+    public Checkpointer(String fileName, int frequency, long intervalMs, FeaturesOutput output,
+                        QuarantineWriter quarantine) {
+        this.fileName = fileName;
+        this.frequency = frequency;
+        this.intervalMs = intervalMs;
+        this.output = output;
+        this.quarantine = quarantine;
+    }
+
+    public void rowWritten(InputRow row, int errorsCnt) throws IOException {
+        lastRow = row;
+        lastErrorsCnt = errorsCnt;
+        if (++rowsSinceCheckpoint >= frequency || intervalOver()) {
+            save(row, errorsCnt);
+        }
+    }
+
+    /**
+     * Saves the rows written since the last checkpoint if the interval is over. For the writer to call while
+     * it waits for rows, so the last rows before a pause of the input are saved too.
+     */
+    public void saveIfDue() throws IOException {
+        if (rowsSinceCheckpoint > 0 && intervalOver()) {
+            save(lastRow, lastErrorsCnt);
+        }
+    }
+
+    private boolean intervalOver() {
+        return intervalMs > 0 && System.currentTimeMillis() - lastSaveMs >= intervalMs;
+    }
+
+    public void save(InputRow row, int errorsCnt) throws IOException {
+        output.sync();
+        long quarantineLength = 0;
+        if (quarantine != null) {
+            quarantine.sync();
+            quarantineLength = quarantine.length();
+        }
+        Checkpoint checkpoint = new Checkpoint(row.getPosition(), row.getRowNum(), output.length(), output.part(),
+                errorsCnt, quarantineLength);
+        checkpoint.save(fileName);
+        rowsSinceCheckpoint = 0;
+        lastSaveMs = System.currentTimeMillis();
+        log.debug("saved {}", checkpoint);
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.oserikov.languagetool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the files written by {@link ColumnarFeaturesWriter} block by block into a {@link FeaturesBatch}.
+ */
+public class ColumnarFeaturesReader implements FeaturesReader {
+    private final DataInputStream in;
+
+    public ColumnarFeaturesReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        int magic = this.in.readInt();
+        int version = this.in.readInt();
+        if (magic != ColumnarFeaturesWriter.MAGIC || version != ColumnarFeaturesWriter.VERSION) {
+            throw new IOException(String.format("not a features file (magic %x, version %d)", magic, version));
+        }
+    }
+
+    /**
+     * Replaces the content of the batch with the next block.
+     *
+     * @return false at the end of the file
+     */
+    @Override
+    public boolean next(FeaturesBatch batch) throws IOException {
+        int rows;
+        try {
+            rows = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        int features = in.readInt();
+        int payloadLength = in.readInt();
+        byte[] payload = new byte[payloadLength];
+        in.readFully(payload);
+
+        try (DataInputStream columns = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+            String[] dictionary = new String[columns.readInt()];
+            for (int d = 0; d < dictionary.length; d++) dictionary[d] = readString(columns);
+
+            int[] rowNums = new int[rows];
+            String[] ruleIds = new String[rows];
+            String[] languages = new String[rows];
+            int[] featureCounts = new int[rows];
+            String[] leftContexts = new String[rows];
+            String[] rightContexts = new String[rows];
+            String[] covered = new String[rows];
+            for (int r = 0; r < rows; r++) rowNums[r] = columns.readInt();
+            for (int r = 0; r < rows; r++) ruleIds[r] = dictionary[columns.readInt()];
+            for (int r = 0; r < rows; r++) languages[r] = dictionary[columns.readInt()];
+            for (int r = 0; r < rows; r++) featureCounts[r] = columns.readInt();
+            for (int r = 0; r < rows; r++) leftContexts[r] = readString(columns);
+            for (int r = 0; r < rows; r++) rightContexts[r] = readString(columns);
+            for (int r = 0; r < rows; r++) covered[r] = readString(columns);
+
+            String[] replacements = new String[features];
+            int[] replacementPositions = new int[features];
+            boolean[] selectedByUser = new boolean[features];
+            for (int f = 0; f < features; f++) replacements[f] = readString(columns);
+            for (int f = 0; f < features; f++) replacementPositions[f] = columns.readInt();
+            for (int f = 0; f < features; f++) selectedByUser[f] = columns.readBoolean();
+
+            batch.clear();
+            int f = 0;
+            for (int r = 0; r < rows; r++) {
+                batch.addRow(rowNums[r], ruleIds[r], languages[r], leftContexts[r], rightContexts[r], covered[r]);
+                for (int end = f + featureCounts[r]; f < end; f++) {
+                    batch.addFeature(replacements[f], replacementPositions[f], selectedByUser[f]);
+                }
+            }
+            return true;
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Converts a features file (gzipped if its name ends with .gz) to the csv {@link CsvFeaturesWriter} would have written.
+     *
+     * @return the number of source rows converted
+     */
+    public static int exportToCsv(String fileName, String csvFileName) throws IOException {
+        int rows = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(fileName));
+        if (fileName.endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        try (ColumnarFeaturesReader reader = new ColumnarFeaturesReader(in);
+             CsvFeaturesWriter writer = new CsvFeaturesWriter(new BufferedWriter(
+                     new OutputStreamWriter(new FileOutputStream(csvFileName), StandardCharsets.UTF_8)))) {
+            FeaturesBatch batch = new FeaturesBatch();
+            while (reader.next(batch)) {
+                writer.write(batch);
+                rows += batch.rows();
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.oserikov.languagetool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compact binary output: blocks of source rows, every block stores its columns one after another, deflated.
+ * <p>
+ * The contexts and the covered string are stored once per source row instead of once per feature row,
+ * rule ids and languages are dictionary encoded per block, replacement positions and user choices are primitive
+ * columns. Every block is self-contained, so a file cut at a block boundary is still valid.
+ * <pre>
+ * file:    MAGIC VERSION block*
+ * block:   rowsCount featuresCount payloadLength payload(deflated)
+ * payload: dictionary(count, strings) rowNum[rows] ruleId[rows] language[rows] featuresCount[rows]
+ *          leftContext[rows] rightContext[rows] covered[rows]
+ *          replacement[features] replacementPosition[features] selectedByUser[features]
+ * </pre>
+ * Ints are 4 bytes big-endian, strings are their UTF-8 length (-1 for null) followed by the bytes.
+ * See {@link ColumnarFeaturesReader}.
+ */
+public class ColumnarFeaturesWriter implements FeaturesWriter {
+    static final int MAGIC = 0x4C544643; // "LTFC"
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int blockRows;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> dictionaryValues = new ArrayList<>();
+    private final FeaturesBatch block;
+
+    /**
+     * @param append true if the stream continues an existing file, which already has the header
+     */
+    public ColumnarFeaturesWriter(OutputStream out, int blockRows, boolean append) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.blockRows = blockRows;
+        this.block = new FeaturesBatch(blockRows, blockRows * 8);
+
+        if (!append) {
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+    }
+
+    @Override
+    public void write(FeaturesBatch batch) throws IOException {
+        for (int r = 0; r < batch.rows(); r++) {
+            if (batch.featureStart(r) == batch.featureEnd(r)) {
+                continue;
+            }
+            block.addRow(batch, r);
+            if (block.rows() == blockRows) {
+                writeBlock();
+            }
+        }
+    }
+
+    private int dictionaryIndex(String value) {
+        Integer index = dictionary.get(value);
+        if (index == null) {
+            index = dictionaryValues.size();
+            dictionary.put(value, index);
+            dictionaryValues.add(value);
+        }
+        return index;
+    }
+
+    private void writeBlock() throws IOException {
+        int rows = block.rows();
+        int features = block.features();
+        if (rows == 0) {
+            return;
+        }
+        int[] ruleIds = new int[rows];
+        int[] languages = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            ruleIds[r] = dictionaryIndex(block.ruleId(r));
+            languages[r] = dictionaryIndex(block.language(r));
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream columns = new DataOutputStream(new DeflaterOutputStream(payload, deflater, 1 << 16))) {
+            columns.writeInt(dictionaryValues.size());
+            for (String value : dictionaryValues) writeString(columns, value);
+
+            for (int r = 0; r < rows; r++) columns.writeInt(block.rowNum(r));
+            for (int r = 0; r < rows; r++) columns.writeInt(ruleIds[r]);
+            for (int r = 0; r < rows; r++) columns.writeInt(languages[r]);
+            for (int r = 0; r < rows; r++) columns.writeInt(block.featureEnd(r) - block.featureStart(r));
+            for (int r = 0; r < rows; r++) writeString(columns, block.leftContext(r));
+            for (int r = 0; r < rows; r++) writeString(columns, block.rightContext(r));
+            for (int r = 0; r < rows; r++) writeString(columns, block.covered(r));
+
+            for (int f = 0; f < features; f++) writeString(columns, block.replacement(f));
+            for (int f = 0; f < features; f++) columns.writeInt(block.replacementPosition(f));
+            for (int f = 0; f < features; f++) columns.writeBoolean(block.selectedByUser(f));
+        } finally {
+            deflater.end();
+        }
+
+        out.writeInt(rows);
+        out.writeInt(features);
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+
+        dictionary.clear();
+        dictionaryValues.clear();
+        block.clear();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Ends the current block, so everything written so far is readable.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.oserikov.languagetool;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+/**
+ * Reads the csv written by {@link CsvFeaturesWriter}, grouping the consecutive lines of a source row.
+ */
+public class CsvFeaturesReader implements FeaturesReader {
+    private static final int BATCH_ROWS = 1024;
+
+    private final CSVParser parser;
+    private final Iterator<CSVRecord> records;
+    private CSVRecord pending;
+
+    public CsvFeaturesReader(Reader in) throws IOException {
+        this.parser = new CSVParser(in, CsvFeaturesWriter.OUTPUT_FORMAT);
+        this.records = parser.iterator();
+    }
+
+    @Override
+    public boolean next(FeaturesBatch batch) throws IOException {
+        batch.clear();
+        try {
+            while (pending != null || records.hasNext()) {
+                CSVRecord record = pending != null ? pending : records.next();
+                pending = null;
+
+                int rowNum = Integer.parseInt(record.get(0));
+                int lastRow = batch.rows() - 1;
+                if (lastRow == -1 || batch.rowNum(lastRow) != rowNum) {
+                    if (batch.rows() == BATCH_ROWS) {
+                        pending = record;
+                        break;
+                    }
+                    batch.addRow(rowNum, record.get(7), record.get(8), record.get(1), record.get(2), record.get(3));
+                }
+                batch.addFeature(record.get(4), Integer.parseInt(record.get(5)), Boolean.parseBoolean(record.get(6)));
+            }
+        } catch (IllegalStateException e) {
+            // the parser's iterator wraps its IOExceptions
+            throw new IOException(e.getMessage(), e.getCause());
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("not a features csv line: " + e.getMessage(), e);
+        }
+        return batch.rows() > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
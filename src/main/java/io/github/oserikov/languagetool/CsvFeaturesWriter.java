@@ -0,0 +1,49 @@
+package io.github.oserikov.languagetool;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.QuoteMode;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * One csv line per feature row, the source row's number, rule id and language repeated on each line.
+ */
+public class CsvFeaturesWriter implements FeaturesWriter {
+    static final CSVFormat OUTPUT_FORMAT = CSVFormat.DEFAULT.withQuoteMode(QuoteMode.NON_NUMERIC).withEscape('\\');
+
+    private final CSVPrinter printer;
+
+    public CsvFeaturesWriter(Writer out) throws IOException {
+        this.printer = new CSVPrinter(out, OUTPUT_FORMAT);
+    }
+
+    @Override
+    public void write(FeaturesBatch batch) throws IOException {
+        for (int f = 0; f < batch.features(); f++) {
+            int row = batch.parentRow(f);
+            // value by value, printRecord would need an array per line
+            printer.print(batch.rowNum(row));
+            printer.print(batch.leftContext(row));
+            printer.print(batch.rightContext(row));
+            printer.print(batch.covered(row));
+            printer.print(batch.replacement(f));
+            printer.print(batch.replacementPosition(f));
+            printer.print(batch.selectedByUser(f));
+            printer.print(batch.ruleId(row));
+            printer.print(batch.language(row));
+            printer.println();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        printer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        printer.close();
+    }
+}
@@ -20,6 +20,30 @@ public class DBUtils {
         return statement;
     }
 
+    /**
+     * Forward-only, read-only statement which doesn't load the whole result into memory.
+     *
+     * @param fetchSize Integer.MIN_VALUE to stream row by row, a positive value to fetch that many rows at once
+     *                  with a server-side cursor (needs useCursorFetch=true in the connection string)
+     */
+    public static PreparedStatement getStreamingStatement(Connection conn, String query, int fetchSize) throws SQLException {
+        log.info("Creating streaming Statement. ...");
+        PreparedStatement statement = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        log.info("Creating streaming Statement. Done!");
+        return statement;
+    }
+
+    /**
+     * Adds useCursorFetch=true to the connection string if a positive fetch size is used.
+     */
+    public static String withCursorFetch(String dbUrl, int fetchSize) {
+        if (fetchSize <= 0 || dbUrl.contains("useCursorFetch")) {
+            return dbUrl;
+        }
+        return dbUrl + (dbUrl.contains("?") ? "&" : "?") + "useCursorFetch=true";
+    }
+
     public static Connection getConnection(String dbUrl, String dbUser, String dbPassword) throws SQLException {
         log.info("Creating Connection. ...");
         Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
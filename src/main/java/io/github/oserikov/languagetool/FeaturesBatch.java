@@ -0,0 +1,197 @@
+package io.github.oserikov.languagetool;
+
+import java.util.Arrays;
+
+/**
+ * Reusable struct-of-arrays buffer of feature rows.
+ * <p>
+ * Every source row is stored once with its number, rule id, language, contexts and covered string.
+ * Its feature rows (the user's replacement first, then the other LanguageTool suggestions) only store the
+ * replacement, its position and whether the user chose it, and refer to the source row for the rest.
+ * Positions and choices are primitive columns, so filling a batch allocates nothing once its arrays
+ * have grown to the usual size; {@link #clear()} keeps the arrays.
+ */
+public class FeaturesBatch {
+    private int rows = 0;
+    private int[] rowNums;
+    private String[] ruleIds;
+    private String[] languages;
+    private String[] leftContexts;
+    private String[] rightContexts;
+    private String[] covered;
+    private int[] featureStarts;
+
+    private int features = 0;
+    private int[] parentRows;
+    private String[] replacements;
+    private int[] replacementPositions;
+    private boolean[] selectedByUser;
+
+    public FeaturesBatch() {
+        this(16, 64);
+    }
+
+    public FeaturesBatch(int rowsCapacity, int featuresCapacity) {
+        rowNums = new int[rowsCapacity];
+        ruleIds = new String[rowsCapacity];
+        languages = new String[rowsCapacity];
+        leftContexts = new String[rowsCapacity];
+        rightContexts = new String[rowsCapacity];
+        covered = new String[rowsCapacity];
+        featureStarts = new int[rowsCapacity];
+
+        parentRows = new int[featuresCapacity];
+        replacements = new String[featuresCapacity];
+        replacementPositions = new int[featuresCapacity];
+        selectedByUser = new boolean[featuresCapacity];
+    }
+
+    /**
+     * Starts a source row, the following {@link #addFeature} calls add its feature rows.
+     *
+     * @return index of the row in the batch
+     */
+    public int addRow(int rowNum, String ruleId, String language, String leftContext, String rightContext,
+                      String coveredString) {
+        if (rows == rowNums.length) {
+            int capacity = rows * 2;
+            rowNums = Arrays.copyOf(rowNums, capacity);
+            ruleIds = Arrays.copyOf(ruleIds, capacity);
+            languages = Arrays.copyOf(languages, capacity);
+            leftContexts = Arrays.copyOf(leftContexts, capacity);
+            rightContexts = Arrays.copyOf(rightContexts, capacity);
+            covered = Arrays.copyOf(covered, capacity);
+            featureStarts = Arrays.copyOf(featureStarts, capacity);
+        }
+        rowNums[rows] = rowNum;
+        ruleIds[rows] = ruleId;
+        languages[rows] = language;
+        leftContexts[rows] = leftContext;
+        rightContexts[rows] = rightContext;
+        covered[rows] = coveredString;
+        featureStarts[rows] = features;
+        return rows++;
+    }
+
+    /**
+     * Adds a feature row to the last source row.
+     *
+     * @return index of the feature row in the batch
+     */
+    public int addFeature(String replacement, int replacementPosition, boolean selected) {
+        if (features == replacements.length) {
+            int capacity = features * 2;
+            parentRows = Arrays.copyOf(parentRows, capacity);
+            replacements = Arrays.copyOf(replacements, capacity);
+            replacementPositions = Arrays.copyOf(replacementPositions, capacity);
+            selectedByUser = Arrays.copyOf(selectedByUser, capacity);
+        }
+        parentRows[features] = rows - 1;
+        replacements[features] = replacement;
+        replacementPositions[features] = replacementPosition;
+        selectedByUser[features] = selected;
+        return features++;
+    }
+
+    /**
+     * Copies a source row of another batch with its feature rows.
+     */
+    public void addRow(FeaturesBatch from, int row) {
+        addRow(from.rowNums[row], from.ruleIds[row], from.languages[row], from.leftContexts[row],
+                from.rightContexts[row], from.covered[row]);
+        for (int f = from.featureStart(row); f < from.featureEnd(row); f++) {
+            addFeature(from.replacements[f], from.replacementPositions[f], from.selectedByUser[f]);
+        }
+    }
+
+    public void setReplacementPosition(int feature, int replacementPosition) {
+        replacementPositions[feature] = replacementPosition;
+    }
+
+    /**
+     * Drops the rows from {@code rows} on, with their feature rows.
+     */
+    public void truncate(int rows) {
+        if (rows >= this.rows) {
+            return;
+        }
+        int features = featureStarts[rows];
+        Arrays.fill(ruleIds, rows, this.rows, null);
+        Arrays.fill(languages, rows, this.rows, null);
+        Arrays.fill(leftContexts, rows, this.rows, null);
+        Arrays.fill(rightContexts, rows, this.rows, null);
+        Arrays.fill(covered, rows, this.rows, null);
+        Arrays.fill(replacements, features, this.features, null);
+        this.rows = rows;
+        this.features = features;
+    }
+
+    public void clear() {
+        truncate(0);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int features() {
+        return features;
+    }
+
+    public int rowNum(int row) {
+        return rowNums[row];
+    }
+
+    public String ruleId(int row) {
+        return ruleIds[row];
+    }
+
+    public String language(int row) {
+        return languages[row];
+    }
+
+    public String leftContext(int row) {
+        return leftContexts[row];
+    }
+
+    public String rightContext(int row) {
+        return rightContexts[row];
+    }
+
+    public String covered(int row) {
+        return covered[row];
+    }
+
+    /**
+     * @return index of the first feature row of the source row
+     */
+    public int featureStart(int row) {
+        return featureStarts[row];
+    }
+
+    /**
+     * @return index after the last feature row of the source row
+     */
+    public int featureEnd(int row) {
+        return row + 1 < rows ? featureStarts[row + 1] : features;
+    }
+
+    /**
+     * @return index of the source row of the feature row
+     */
+    public int parentRow(int feature) {
+        return parentRows[feature];
+    }
+
+    public String replacement(int feature) {
+        return replacements[feature];
+    }
+
+    public int replacementPosition(int feature) {
+        return replacementPositions[feature];
+    }
+
+    public boolean selectedByUser(int feature) {
+        return selectedByUser[feature];
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The features file of a run: a {@link FeaturesWriter} writing through an {@link AsyncFileOutput}, optionally gzipped.
+ * <p>
+ * With a part size the output is cut into parts {@code <file>.part-00000}, {@code <file>.part-00001}, ...
+ * A part is written as {@code <part>.inprogress} and renamed once it holds at least the part size,
+ * between two source rows, so downstream jobs can read the renamed parts while the run goes on.
+ * Every part is a complete file of the output format.
+ * <p>
+ * A {@link Checkpoint} records the part and its length. Resuming from it deletes the parts written after it
+ * and cuts the checkpoint's part back to its length.
+ */
+@Slf4j
+public class FeaturesOutput implements FeaturesWriter {
+    private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+
+    public interface WriterFactory {
+        /**
+         * @param append true if the stream continues a file which already has content
+         */
+        FeaturesWriter open(OutputStream out, boolean append) throws IOException;
+    }
+
+    private final String baseName;
+    private final String fileName;
+    private final WriterFactory writers;
+    private final boolean gzip;
+    private final long partSize;
+    private final int bufferSize;
+    private final int buffers;
+
+    private int part;
+    private AsyncFileOutput out;
+    private FeaturesWriter writer;
+
+    /**
+     * @param partSize   0 for one file
+     * @param checkpoint where to go on from, null to start a new output
+     */
+    public FeaturesOutput(String fileName, WriterFactory writers, boolean gzip, long partSize, int bufferSize,
+                          int buffers, Checkpoint checkpoint) throws IOException {
+        this.baseName = fileName;
+        this.fileName = gzip ? fileName + ".gz" : fileName;
+        this.writers = writers;
+        this.gzip = gzip;
+        this.partSize = partSize;
+        this.bufferSize = bufferSize;
+        this.buffers = buffers;
+
+        part = checkpoint == null ? 0 : checkpoint.getOutputPart();
+        if (partSize > 0) {
+            // the rows of the later parts are written again
+            deleteParts(checkpoint == null ? 0 : part + 1);
+            if (Files.exists(partPath(part))) {
+                Files.move(partPath(part), inProgressPath(part), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        open(checkpoint == null ? 0 : checkpoint.getOutputLength());
+    }
+
+    private void deleteParts(int from) throws IOException {
+        for (int p = from; Files.exists(partPath(p)) || Files.exists(inProgressPath(p)); p++) {
+            log.info("deleting {} of an earlier run.", partPath(p));
+            Files.deleteIfExists(partPath(p));
+            Files.deleteIfExists(inProgressPath(p));
+        }
+    }
+
+    /**
+     * @return the output file name, or the base name of the parts
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    private Path partPath(int p) {
+        return Paths.get(String.format("%s.part-%05d%s", baseName, p, gzip ? ".gz" : ""));
+    }
+
+    private Path inProgressPath(int p) {
+        return Paths.get(partPath(p) + IN_PROGRESS_SUFFIX);
+    }
+
+    private Path currentPath() {
+        return partSize > 0 ? inProgressPath(part) : Paths.get(fileName);
+    }
+
+    /**
+     * Opens the current file, keeping its first {@code length} bytes.
+     */
+    private void open(long length) throws IOException {
+        FileChannel channel = FileChannel.open(currentPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // drop the features written after the checkpoint, they will be written again
+        channel.truncate(length);
+        channel.position(length);
+        out = new AsyncFileOutput(channel, gzip, bufferSize, buffers);
+        writer = writers.open(out, length > 0);
+    }
+
+    @Override
+    public void write(FeaturesBatch batch) throws IOException {
+        if (writer == null) {
+            open(0);
+        }
+        writer.write(batch);
+        if (partSize > 0 && out.length() >= partSize) {
+            finishPart();
+        }
+    }
+
+    private void finishPart() throws IOException {
+        writer.flush();
+        out.force();
+        writer.close();
+        writer = null;
+        Files.move(inProgressPath(part), partPath(part), StandardCopyOption.ATOMIC_MOVE);
+        log.info("finished {}.", partPath(part));
+        part++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Flushes the output to the disk, for a checkpoint of {@link #part()} and {@link #length()}.
+     */
+    public void sync() throws IOException {
+        if (writer != null) {
+            writer.flush();
+            out.force();
+        }
+    }
+
+    /**
+     * @return bytes in the current file or part, all the bytes written before the last flush included
+     */
+    public long length() {
+        return writer == null ? 0 : out.length();
+    }
+
+    /**
+     * @return the number of the current part, 0 without parts
+     */
+    public int part() {
+        return part;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        if (partSize > 0) {
+            finishPart();
+        } else {
+            writer.close();
+            writer = null;
+        }
+    }
+}
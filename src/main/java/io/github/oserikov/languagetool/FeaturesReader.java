@@ -0,0 +1,16 @@
+package io.github.oserikov.languagetool;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads back the features written by a {@link FeaturesWriter}, a few source rows at a time, in file order.
+ */
+public interface FeaturesReader extends Closeable {
+    /**
+     * Replaces the content of the batch with the next source rows and their features.
+     *
+     * @return false at the end of the file
+     */
+    boolean next(FeaturesBatch batch) throws IOException;
+}
@@ -0,0 +1,15 @@
+package io.github.oserikov.languagetool;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Output of the extracted features. Rows are written in input order.
+ */
+public interface FeaturesWriter extends Closeable, Flushable {
+    /**
+     * Writes all the rows of the batch, the batch can be reused when this returns.
+     */
+    void write(FeaturesBatch batch) throws IOException;
+}
@@ -0,0 +1,11 @@
+package io.github.oserikov.languagetool;
+
+/**
+ * An input which does not end: when it runs out of rows it waits for new ones, until it is stopped.
+ */
+public interface FollowingInputSource extends InputSource {
+    /**
+     * Makes {@link #next()} return null instead of waiting, may be called from any thread.
+     */
+    void stop();
+}
@@ -0,0 +1,31 @@
+package io.github.oserikov.languagetool;
+
+import org.languagetool.rules.RuleMatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs all the rules of the language on the sentence and keeps the matches covering the error.
+ */
+public class FullCheckSuggestionSource implements SuggestionSource {
+    private final LanguageRegistry languages;
+
+    public FullCheckSuggestionSource(LanguageRegistry languages) {
+        this.languages = languages;
+    }
+
+    @Override
+    public List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                                    String leftContext, String rightContext) throws IOException {
+        List<String> suggestions = new ArrayList<>();
+        List<RuleMatch> matches = languages.get(ruleId).check(sentence);
+        for (RuleMatch match : matches) {
+            if (match.getFromPos() == errorStartIdx && match.getToPos() == errorStartIdx + covered.length()) {
+                suggestions.addAll(match.getSuggestedReplacements());
+            }
+        }
+        return suggestions;
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.oserikov.languagetool;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class InputRow {
+    private final int rowNum; // 1 based
+    private final String sentence;
+    private final String correction;
+    private final String covered;
+    private final String replacement;
+    private final Integer suggestionPos;
+    private final String ruleId;
+    private final String language;
+    private final long position; // where to resume reading after this row, -1 if the source can't resume
+
+    public static InputRow of(int rowNum, String sentence, String correction, String covered, String replacement,
+                              String suggestion_pos_as_string, String ruleId, String language, long position) {
+        try {
+            Integer.parseInt(suggestion_pos_as_string);
+        } catch (NumberFormatException e) {
+            suggestion_pos_as_string = "-1";
+        }
+        Integer suggestion_pos = Integer.parseInt(suggestion_pos_as_string);
+
+        return new InputRow(rowNum, sentence, correction, covered, replacement, suggestion_pos, ruleId, language, position);
+    }
+
+    public InputRow withRowNum(int rowNum) {
+        return new InputRow(rowNum, sentence, correction, covered, replacement, suggestionPos, ruleId, language, position);
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.oserikov.languagetool;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Corrections rows to extract the features from, numbered from 1 in reading order.
+ */
+public interface InputSource extends Closeable {
+    /**
+     * @return the next row or null if there are no more rows
+     */
+    InputRow next() throws IOException;
+}
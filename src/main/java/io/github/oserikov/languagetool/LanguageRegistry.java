@@ -0,0 +1,136 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.languagetool.JLanguageTool;
+import org.languagetool.Language;
+import org.languagetool.language.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lazily creates the {@link JLanguageTool} instance needed for a rule id.
+ * <p>
+ * {@link Language} objects are created once per process and shared, JLanguageTool instances are not thread-safe
+ * so every worker has its own registry. Rule ids we don't know fall back to American English.
+ */
+@Slf4j
+public class LanguageRegistry {
+    private static final String DEFAULT_RULE_ID = "MORFOLOGIK_RULE_EN_US";
+
+    private static final Map<String, Supplier<Language>> LANGUAGE_FACTORIES = new HashMap<String, Supplier<Language>>(){
+        {
+            put("AUSTRIAN_GERMAN_SPELLER_RULE", AustrianGerman::new);
+            put("FR_SPELLING_RULE", French::new);
+            put("GERMAN_SPELLER_RULE", GermanyGerman::new);
+            put("MORFOLOGIK_RULE_AST", Asturian::new);
+            put("MORFOLOGIK_RULE_BE_BY", Belarusian::new);
+            put("MORFOLOGIK_RULE_BR_FR", Breton::new);
+            put("MORFOLOGIK_RULE_CA_ES", Catalan::new);
+            put("MORFOLOGIK_RULE_EL_GR", Greek::new);
+            put("MORFOLOGIK_RULE_EN_AU", AustralianEnglish::new);
+            put("MORFOLOGIK_RULE_EN_CA", CanadianEnglish::new);
+            put("MORFOLOGIK_RULE_EN_GB", BritishEnglish::new);
+            put("MORFOLOGIK_RULE_EN_NZ", NewZealandEnglish::new);
+            put("MORFOLOGIK_RULE_EN_US", AmericanEnglish::new);
+            put("MORFOLOGIK_RULE_EN_ZA", SouthAfricanEnglish::new);
+            put("MORFOLOGIK_RULE_ES", Spanish::new);
+            put("MORFOLOGIK_RULE_IT_IT", Italian::new);
+            put("MORFOLOGIK_RULE_NL_NL", Dutch::new);
+            put("MORFOLOGIK_RULE_PL_PL", Polish::new);
+            put("MORFOLOGIK_RULE_RO_RO", Romanian::new);
+            put("MORFOLOGIK_RULE_RU_RU", Russian::new);
+            put("MORFOLOGIK_RULE_SK_SK", Slovak::new);
+            put("MORFOLOGIK_RULE_SL_SI", Slovenian::new);
+            put("MORFOLOGIK_RULE_SR_EKAVIAN", JekavianSerbian::new);
+            put("MORFOLOGIK_RULE_TL", Tagalog::new);
+            put("MORFOLOGIK_RULE_UK_UA", Ukrainian::new);
+            put("SWISS_GERMAN_SPELLER_RULE", SwissGerman::new);
+        }
+    };
+
+    private static final Map<String, Language> sharedLanguages = new ConcurrentHashMap<>();
+
+    private final String pathToNgrams;
+    private final Map<String, JLanguageTool> instances = new ConcurrentHashMap<>();
+
+    public LanguageRegistry(String pathToNgrams) {
+        this.pathToNgrams = pathToNgrams;
+    }
+
+    /**
+     * @return the JLanguageTool for the rule id, created and warmed on the first call.
+     */
+    public JLanguageTool get(String ruleId) {
+        String key = resolve(ruleId);
+        JLanguageTool lt = instances.get(key);
+        if (lt == null) {
+            lt = createLT(key);
+            instances.put(key, lt);
+        }
+        return lt;
+    }
+
+    /**
+     * Creates the instances for all the given rule ids in parallel.
+     */
+    public void warmUp(Collection<String> ruleIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String ruleId : ruleIds) {
+            keys.add(resolve(ruleId));
+        }
+        keys.removeAll(instances.keySet());
+
+        long start = System.currentTimeMillis();
+        keys.parallelStream().forEach(key -> instances.put(key, createLT(key)));
+        log.info("{} languages warmed up in {} ms.", keys.size(), System.currentTimeMillis() - start);
+        SharedLanguageModels.logStats();
+    }
+
+    public static Set<String> knownRuleIds() {
+        return LANGUAGE_FACTORIES.keySet();
+    }
+
+    private static String resolve(String ruleId) {
+        return LANGUAGE_FACTORIES.containsKey(ruleId) ? ruleId : DEFAULT_RULE_ID;
+    }
+
+    private JLanguageTool createLT(String ruleId) {
+        long start = System.currentTimeMillis();
+
+        Language language = sharedLanguages.computeIfAbsent(ruleId, key -> LANGUAGE_FACTORIES.get(key).get());
+        JLanguageTool lt = new JLanguageTool(language);
+        initSingleLT(lt);
+        try {
+            // the first check of an unknown word loads dictionaries, taggers and disambiguators
+            lt.check("xyzzy");
+        } catch (IOException e) {
+            log.error("Error! issue when warming up {}.", ruleId, e);
+        }
+
+        log.info("{} initialized for {} in {} ms.", language.getShortCodeWithCountryAndVariant(), ruleId,
+                System.currentTimeMillis() - start);
+        return lt;
+    }
+
+    private void initSingleLT(JLanguageTool lt) {
+        try {
+            SharedLanguageModels.activateLanguageModelRules(lt, Paths.get(pathToNgrams).toFile());
+        } catch (RuntimeException | IOException e) {
+            log.error("Error! n-gram data is not loaded.", e);
+        }
+//        try {
+//            lt.activateWord2VecModelRules(Paths.get(pathToWord2Vec).toFile());
+//            log.info("word2vec data loaded.");
+//        } catch (RuntimeException | IOException e) {
+//            log.error("Error! word2vec data is not loaded.", e);
+//        }
+    }
+}
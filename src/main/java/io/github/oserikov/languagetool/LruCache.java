@@ -0,0 +1,61 @@
+package io.github.oserikov.languagetool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded least-recently-used map, safe to share between threads.
+ */
+public class LruCache<K, V> {
+    private final Map<K, V> map;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LruCache(int maxSize) {
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V get(K key) {
+        V value;
+        synchronized (map) {
+            value = map.get(key);
+        }
+        (value == null ? misses : hits).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Looks the key up without counting a hit or a miss and without making it recently used.
+     */
+    public boolean contains(K key) {
+        synchronized (map) {
+            return map.containsKey(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        synchronized (map) {
+            map.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        int size;
+        synchronized (map) {
+            size = map.size();
+        }
+        return String.format("size: %d, hits: %d, misses: %d, evictions: %d", size, hits.get(), misses.get(), evictions.get());
+    }
+}
@@ -1,22 +1,14 @@
 package io.github.oserikov.languagetool;
 
-import lombok.Getter;
-import lombok.Setter;
-import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.csv.QuoteMode;
-import org.apache.commons.lang3.tuple.Pair;
-import org.languagetool.JLanguageTool;
-import org.languagetool.language.*;
-import org.languagetool.rules.RuleMatch;
 
 import java.io.*;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static io.github.oserikov.languagetool.DBUtils.*;
 
@@ -32,12 +24,44 @@ public class Main {
     private static final int DEFAULT_LOG_FREQUENCY = 100;
     private static final int DEFAULT_CONTEXT_LENGTH = 3;
     private static final int DEFAULT_STARTING_ROW_NUM = 1; // 1 based
-
-    private static final String DEFAULT_QUERY =
+    private static final int DEFAULT_WORKER_THREADS = 1;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_AFFINITY_WINDOW = 0;
+    private static final int DEFAULT_CHECK_BATCH_SIZE = 1;
+    private static final String TSV_INPUT_SOURCE = "tsv";
+    private static final String MYSQL_INPUT_SOURCE = "mysql";
+    private static final int DEFAULT_MYSQL_FETCH_SIZE = Integer.MIN_VALUE; // row by row streaming
+    private static final int DEFAULT_MYSQL_PARTITIONS = 1;
+    private static final int DEFAULT_MYSQL_CONNECTIONS = 4;
+    private static final String DEFAULT_MYSQL_KEY_COLUMN = "id";
+    private static final int DEFAULT_MYSQL_PAGE_SIZE = 1000;
+    private static final int DEFAULT_CHECKPOINT_FREQUENCY = 10000;
+    private static final int DEFAULT_TSV_READER_THREADS = 1;
+    private static final String CSV_OUTPUT_FORMAT = "csv";
+    static final String COLUMNAR_OUTPUT_FORMAT = "columnar";
+    private static final int DEFAULT_COLUMNAR_BLOCK_ROWS = 8192;
+    private static final long DEFAULT_TSV_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int DEFAULT_METRICS_FREQUENCY = 60;
+    private static final long DEFAULT_ROW_TIMEOUT_MS = 0;
+    private static final int DEFAULT_MAX_ABANDONED_WORKERS = 10;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 30;
+    private static final long DEFAULT_FOLLOW_POLL_INTERVAL_MS = 1000;
+    private static final int DEFAULT_FOLLOW_BATCH_SIZE = 1000;
+    private static final String GZIP_OUTPUT_COMPRESSION = "gzip";
+    private static final long DEFAULT_OUTPUT_PART_SIZE = 0;
+    private static final int DEFAULT_OUTPUT_BUFFER_SIZE = 1 << 20;
+    private static final int DEFAULT_OUTPUT_BUFFERS = 8;
+    private static final int DEFAULT_SUGGESTIONS_CACHE_SIZE = 100000;
+    private static final String DEFAULT_TOKEN_LEVEL_RULES = "MORFOLOGIK_RULE_";
+    private static final String FULL_SUGGESTIONS_MODE = "full";
+    private static final String SPELLER_SUGGESTIONS_MODE = "speller";
+
+    private static final String CORRECTIONS_TABLE = "corrections";
+    private static final String DEFAULT_SELECT =
             "SELECT sentence, correction, covered, replacement, suggestion_pos, rule_id, language " +
-                    "FROM corrections " +
-                    "WHERE " +
-                    "rule_id LIKE \'MORFOLOGIK_RULE_%%\' OR " +
+                    "FROM " + CORRECTIONS_TABLE;
+    private static final String DEFAULT_CONDITIONS =
+            "rule_id LIKE \'MORFOLOGIK_RULE_%%\' OR " +
                     "rule_id LIKE \'%%GERMAN_SPELLER_RULE%%\' OR " +
                     "rule_id = \'HUNSPELL_NO_SUGGEST_RULE\' OR " +
                     "rule_id = \'HUNSPELL_RULE\' OR " +
@@ -47,6 +71,7 @@ public class Main {
                     "rule_id = \'SWISS_GERMAN_SPELLER_RULE\' AND " +
                     "sentence != correction AND " +
                     "covered != replacement";
+    private static final String DEFAULT_QUERY = DEFAULT_SELECT + " WHERE " + DEFAULT_CONDITIONS;
 
 
     private static String outputCsvFileName;
@@ -59,169 +84,361 @@ public class Main {
     private static Integer logFrequency;
     private static Integer contextLength;
     private static String query;
+    private static Integer sqlLimit;
     private static Integer startingRowNum;
+    private static Integer workerThreads;
+    private static Integer queueCapacity;
+    private static Integer affinityWindow;
+    private static Integer checkBatchSize;
+    private static boolean prescanRuleIds;
+    private static String suggestionsMode;
+    private static boolean verifySuggestions;
+    private static Integer suggestionsCacheSize;
+    private static List<String> tokenLevelRulePrefixes;
+    private static String inputSourceType;
+    private static Integer mysqlFetchSize;
+    private static Integer mysqlPageSize;
+    private static Integer mysqlPartitions;
+    private static Integer mysqlConnections;
+    private static String mysqlKeyColumn;
+    private static String checkpointFileName;
+    private static Integer checkpointFrequency;
+    private static Integer checkpointInterval;
+    private static Long followPollIntervalMs;
+    private static Integer followBatchSize;
+    private static String outputCompression;
+    private static Long outputPartSize;
+    private static Integer outputBufferSize;
+    private static Integer outputBuffers;
+    private static Integer tsvReaderThreads;
+    private static Long tsvChunkSize;
+    private static String outputFormat;
+    private static Integer columnarBlockRows;
+    private static String metricsFileName;
+    private static Integer metricsFrequency;
+    private static Long rowTimeoutMs;
+    private static Integer maxAbandonedWorkers;
+    private static String quarantineFileName;
+    private static int shard = 0;
+    private static int shards = 0; // 0 - no sharding
 
 
-    private static final JLanguageTool defaultLT = new JLanguageTool(new AmericanEnglish());
     private static final String PROPERTIES_FILENAME = "features-extractor.properties";
 
-    private static final Map<String, JLanguageTool> languages = new HashMap<String, JLanguageTool>(){
-        {
-            put("AUSTRIAN_GERMAN_SPELLER_RULE", new JLanguageTool(new AustrianGerman()));
-            put("FR_SPELLING_RULE", new JLanguageTool(new French()));
-            put("GERMAN_SPELLER_RULE", new JLanguageTool(new GermanyGerman()));
-            put("MORFOLOGIK_RULE_AST", new JLanguageTool(new Asturian()));
-            put("MORFOLOGIK_RULE_BE_BY", new JLanguageTool(new Belarusian()));
-            put("MORFOLOGIK_RULE_BR_FR", new JLanguageTool(new Breton()));
-            put("MORFOLOGIK_RULE_CA_ES", new JLanguageTool(new Catalan()));
-            put("MORFOLOGIK_RULE_EL_GR", new JLanguageTool(new Greek()));
-            put("MORFOLOGIK_RULE_EN_AU", new JLanguageTool(new AustralianEnglish()));
-            put("MORFOLOGIK_RULE_EN_CA", new JLanguageTool(new CanadianEnglish()));
-            put("MORFOLOGIK_RULE_EN_GB", new JLanguageTool(new BritishEnglish()));
-            put("MORFOLOGIK_RULE_EN_NZ", new JLanguageTool(new NewZealandEnglish()));
-            put("MORFOLOGIK_RULE_EN_US", new JLanguageTool(new AmericanEnglish()));
-            put("MORFOLOGIK_RULE_EN_ZA", new JLanguageTool(new SouthAfricanEnglish()));
-            put("MORFOLOGIK_RULE_ES", new JLanguageTool(new Spanish()));
-            put("MORFOLOGIK_RULE_IT_IT", new JLanguageTool(new Italian()));
-            put("MORFOLOGIK_RULE_NL_NL", new JLanguageTool(new Dutch()));
-            put("MORFOLOGIK_RULE_PL_PL", new JLanguageTool(new Polish()));
-            put("MORFOLOGIK_RULE_RO_RO", new JLanguageTool(new Romanian()));
-            put("MORFOLOGIK_RULE_RU_RU", new JLanguageTool(new Russian()));
-            put("MORFOLOGIK_RULE_SK_SK", new JLanguageTool(new Slovak()));
-            put("MORFOLOGIK_RULE_SL_SI", new JLanguageTool(new Slovenian()));
-            put("MORFOLOGIK_RULE_SR_EKAVIAN", new JLanguageTool(new JekavianSerbian()));
-            put("MORFOLOGIK_RULE_TL", new JLanguageTool(new Tagalog()));
-            put("MORFOLOGIK_RULE_UK_UA", new JLanguageTool(new Ukrainian()));
-            put("SWISS_GERMAN_SPELLER_RULE", new JLanguageTool(new SwissGerman()));
-        }
-    };
-
 
     public static void main(String[] args) {
         log.info("Hello!");
+        long start = System.currentTimeMillis();
+
+        if (args.length == 3 && "export".equals(args[0])) {
+            exportToCsv(args[1], args[2]);
+            log.info("Bye! total time: {} ms.", System.currentTimeMillis() - start);
+            return;
+        }
+
+        if (args.length >= 3 && "merge".equals(args[0])) {
+            mergeShards(args[1], Arrays.asList(args).subList(2, args.length));
+            log.info("Bye! total time: {} ms.", System.currentTimeMillis() - start);
+            return;
+        }
+
+        boolean resume = Arrays.asList(args).contains("--resume");
+        int shardIdx = Arrays.asList(args).indexOf("--shard");
+        if (shardIdx != -1) {
+            String[] shardArg = shardIdx + 1 < args.length ? args[shardIdx + 1].split("/") : new String[0];
+            try {
+                shard = Integer.parseInt(shardArg[0]);
+                shards = Integer.parseInt(shardArg[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                shards = 0;
+            }
+            if (shards < 1 || shard < 0 || shard >= shards) {
+                log.error("Error! expected --shard i/N with 0 <= i < N.");
+                return;
+            }
+            log.info("running shard {} of {}.", shard, shards);
+        }
 
         initConfig();
-        initLanguagesMap();
-        processDBData();
+        if (shards > 0 && outputPartSize > 0) {
+            log.error("Error! output_part_size_in_bytes can't be used with --shard, a shard's output is one file.");
+            return;
+        }
+        processDBData(resume, Arrays.asList(args).contains("--follow"));
 
-        log.info("Bye!");
+        log.info("Bye! total time: {} ms.", System.currentTimeMillis() - start);
     }
 
-    private static void initLanguagesMap() {
-        for (JLanguageTool lang : languages.values()){
-            initSingleLT(lang);
+    private static void processDBData(boolean resume, boolean follow) {
+        Checkpoint checkpoint = null;
+        if (resume) {
+            if (MYSQL_INPUT_SOURCE.equals(inputSourceType) && !follow) {
+                log.error("Error! only {} input or --follow can be resumed.", TSV_INPUT_SOURCE);
+                return;
+            }
+            try {
+                checkpoint = Checkpoint.load(checkpointFileName);
+            } catch (IOException | RuntimeException e) {
+                log.error("Error! can't load checkpoint '{}'.", checkpointFileName, e);
+                return;
+            }
+            if (checkpoint == null && follow) {
+                // the same command line restarts a follower, also before its first checkpoint
+                log.info("no checkpoint '{}' yet, starting from the beginning.", checkpointFileName);
+            } else if (checkpoint == null) {
+                log.error("Error! no checkpoint '{}' to resume from.", checkpointFileName);
+                return;
+            } else {
+                log.info("resuming from {}", checkpoint);
+            }
         }
-        initSingleLT(defaultLT);
-    }
 
-    private static void processDBData() {
-        FileWriter csvOut;
+        FeaturesOutput output;
         try {
-            csvOut = new FileWriter(outputCsvFileName);
+            output = new FeaturesOutput(outputCsvFileName, Main::openFeaturesWriter, GZIP_OUTPUT_COMPRESSION.equals(outputCompression),
+                    outputPartSize, outputBufferSize, outputBuffers, checkpoint);
         } catch (IOException e) {
             log.error("Error! issue when creating csv file.", e);
             return;
         }
 
-        Reader in;
+        InputSource source;
         try {
-            in = new FileReader(inputCsvFileName);
+            source = follow ? openFollowingInputSource(checkpoint) : openInputSource(checkpoint);
         } catch (IOException e) {
-            log.error("Error! issue when opening csv file.", e);
+            log.error("Error! issue when opening {} input.", inputSourceType, e);
             return;
         }
-
-        log.debug(query);
-
-        String[] HEADERS = {"sentence", "correction", "covered", "replacement", "suggestion_pos", "rule_id", "language"};
+        if (follow) {
+            stopOnShutdown((FollowingInputSource) source);
+        }
+        ShardedInputSource shardSource = null;
+        if (shards > 0) {
+            shardSource = new ShardedInputSource(source, shard, shards,
+                    checkpoint == null ? startingRowNum - 1 : checkpoint.getRowNum());
+            source = shardSource;
+        }
 
         try (
-//             Connection conn = getConnection(dbUrl, dbUser, dbPass);
-//             Statement stmt = getStatement(conn);
-//             ResultSet rs = getRs(stmt, query);
-                CSVPrinter printer = new CSVPrinter(csvOut, CSVFormat.DEFAULT.withQuoteMode(QuoteMode.NON_NUMERIC).withEscape('\\')))
+                InputSource in = source;
+                FeaturesOutput writer = output;
+                QuarantineWriter quarantine = rowTimeoutMs > 0 ? new QuarantineWriter(quarantineFileName, checkpoint == null ? 0 : checkpoint.getQuarantineLength()) : null)
         {
-            Iterable<CSVRecord> records = CSVFormat.DEFAULT
-                    .withHeader(HEADERS)
-                    .withDelimiter('\t')
-                    .withEscape('\\')
-                    .withRecordSeparator('\n')
-                    .parse(in);
-
-            int i = 0;
-            int errorsCnt = 0;
-            for (CSVRecord rs : records) {
-                i++;
-                if (i < startingRowNum) continue;
-                if (i % logFrequency == 0) {
-                    log.info("processed {} rows. ...", i);
-                }
-
-                String sentence = rs.get("sentence");
-                String correction = rs.get("correction");
-                String covered = rs.get("covered");
-                String replacement = rs.get("replacement");
-                String suggestion_pos_as_string = rs.get("suggestion_pos");
-                try {
-                    Integer.parseInt(suggestion_pos_as_string);
-                } catch (NumberFormatException e) {
-                    suggestion_pos_as_string = "-1";
-                }
-                Integer suggestion_pos = Integer.parseInt(suggestion_pos_as_string);
-                String morfologik_rule_id = rs.get("rule_id");
-                String language = rs.get("language");
-
-//                System.out.print(sentence + "\t");
-//                System.out.print(correction + "\t");
-//                System.out.print(covered + "\t");
-//                System.out.print(replacement + "\t");
-//                System.out.print(suggestion_pos + "\t");
-//                System.out.print(morfologik_rule_id + "\t");
-//                System.out.print(language + "\n");
-
-                try {
-                    List<FeaturesRow> collectedDataFeaturesRows = processRow(sentence, correction, covered, replacement, suggestion_pos, morfologik_rule_id);
-
-                    for (FeaturesRow featuresRow : collectedDataFeaturesRows) {
-                        printer.printRecord(i,
-                                featuresRow.getLeftContext(),
-                                featuresRow.getRightContext(),
-                                featuresRow.getCoveredString(),
-                                featuresRow.getReplacementString(),
-                                featuresRow.getReplacementPosition(),
-                                featuresRow.getSelectedByUser(),
-                                morfologik_rule_id,
-                                language);
-                    }
-                }
-                catch (Exception e) {
-                    log.error("Error! {} {}. On row: {}, {}, {}, {}, {}, {}, {}", e.getClass(), e.getMessage(),
-                            sentence, correction, covered, replacement, suggestion_pos, morfologik_rule_id, language);
-                    errorsCnt += 1;
+            Set<String> ruleIds = prescanRuleIds ? scanRuleIds() : Collections.emptySet();
+            CachingSuggestionSource.Caches caches = suggestionsCacheSize > 0
+                    ? new CachingSuggestionSource.Caches(suggestionsCacheSize, tokenLevelRulePrefixes)
+                    : null;
+            Metrics metrics = new Metrics();
+            metrics.registerMBean();
+            ParallelPipeline pipeline = new ParallelPipeline(workerThreads, queueCapacity, startingRowNum, logFrequency,
+                    () -> {
+                        LanguageRegistry languages = new LanguageRegistry(pathToNgrams);
+                        languages.warmUp(ruleIds);
+                        return new RowProcessor(newSuggestionSource(languages, caches, metrics), contextLength, metrics);
+                    });
+            pipeline.setMetrics(metrics);
+            if (follow && affinityWindow > 0) {
+                // a window is dispatched when it is full, the rows of a quiet input would wait for it
+                log.warn("affinity_window is not used with --follow.");
+            } else {
+                pipeline.setAffinityWindow(affinityWindow);
+            }
+            pipeline.setCheckBatchSize(checkBatchSize);
+            pipeline.setRowTimeout(rowTimeoutMs, maxAbandonedWorkers, quarantine);
+            if (caches != null) {
+                pipeline.onProgress(() -> log.info("{}", caches));
+            }
+            if ((TSV_INPUT_SOURCE.equals(inputSourceType) || follow) && checkpointFrequency > 0) {
+                pipeline.setCheckpointer(
+                        new Checkpointer(checkpointFileName, checkpointFrequency, checkpointInterval * 1000L, writer, quarantine),
+                        checkpoint == null ? 0 : checkpoint.getErrorsCnt());
+            }
+            ScheduledExecutorService metricsDumper = startMetricsDumper(metrics);
+            int i;
+            try {
+                i = pipeline.run(in, writer);
+            } finally {
+                if (metricsDumper != null) {
+                    metricsDumper.shutdownNow();
                 }
             }
+            log.info("read {} rows.", i);
+            metrics.logSummary();
+            saveMetrics(metrics);
+            SharedLanguageModels.logStats();
+            if (caches != null) {
+                log.info("{}", caches);
+            }
+            if (verifySuggestions) {
+                VerifyingSuggestionSource.logStats();
+            }
 
-            printer.close();
-            log.info("processed {} rows with {} errors. Done!", i, errorsCnt);
+            writer.close();
+            if (shardSource != null) {
+                saveShardManifest(writer.getFileName(), shardSource.getLastRowNum(), pipeline.getErrorsCnt());
+            }
         }
         catch (Exception e) {
             log.error("Error!", e);
         }
     }
 
-    private static void initSingleLT(JLanguageTool lt) {
+    private static void saveShardManifest(String outputFileName, int inputRows, int errorsCnt) throws IOException {
+        long inputSize = MYSQL_INPUT_SOURCE.equals(inputSourceType) ? -1 : new File(inputCsvFileName).length();
+        ShardManifest manifest = Shards.describe(shard, shards, startingRowNum, inputRows, inputSize, errorsCnt,
+                outputFileName, outputFormat);
+        manifest.save(outputFileName + ".manifest");
+        log.info("shard manifest: {}", manifest);
+    }
+
+    private static void mergeShards(String outputFileName, List<String> manifestFileNames) {
+        log.info("Merging {} shards into {}. ...", manifestFileNames.size(), outputFileName);
+        try {
+            int rows = Shards.merge(manifestFileNames, outputFileName, DEFAULT_COLUMNAR_BLOCK_ROWS);
+            log.info("Merging {} shards into {}. Done! {} rows.", manifestFileNames.size(), outputFileName, rows);
+        } catch (IOException e) {
+            log.error("Error! issue when merging shards into {}.", outputFileName, e);
+        }
+    }
+
+    private static ScheduledExecutorService startMetricsDumper(Metrics metrics) {
+        if (metricsFrequency <= 0) {
+            return null;
+        }
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> saveMetrics(metrics), metricsFrequency, metricsFrequency, TimeUnit.SECONDS);
+        return dumper;
+    }
+
+    private static void saveMetrics(Metrics metrics) {
+        if (metricsFrequency <= 0) {
+            return;
+        }
         try {
-            lt.activateLanguageModelRules(Paths.get(pathToNgrams).toFile());
-            log.info("n-gram data loaded.");
-        } catch (RuntimeException | IOException e) {
-            log.error("Error! n-gram data is not loaded.", e);
-        }
-//        try {
-//            lt.activateWord2VecModelRules(Paths.get(pathToWord2Vec).toFile());
-//            log.info("word2vec data loaded.");
-//        } catch (RuntimeException | IOException e) {
-//            log.error("Error! word2vec data is not loaded.", e);
-//        }
+            metrics.save(metricsFileName);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error! issue when saving metrics to '{}'.", metricsFileName, e);
+        }
+    }
+
+    private static FeaturesWriter openFeaturesWriter(OutputStream out, boolean append) throws IOException {
+        // the output is buffered already
+        if (COLUMNAR_OUTPUT_FORMAT.equals(outputFormat)) {
+            return new ColumnarFeaturesWriter(out, columnarBlockRows, append);
+        }
+        return new CsvFeaturesWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static void exportToCsv(String fileName, String csvFileName) {
+        log.info("Exporting {} to {}. ...", fileName, csvFileName);
+        try {
+            int rows = ColumnarFeaturesReader.exportToCsv(fileName, csvFileName);
+            log.info("Exporting {} to {}. Done! {} rows.", fileName, csvFileName, rows);
+        } catch (IOException e) {
+            log.error("Error! issue when exporting {}.", fileName, e);
+        }
+    }
+
+    private static SuggestionSource newSuggestionSource(LanguageRegistry languages, CachingSuggestionSource.Caches caches,
+                                                        Metrics metrics) {
+        // the checks are timed below the cache, the verifying checks are not timed
+        SuggestionSource source;
+        if (SPELLER_SUGGESTIONS_MODE.equals(suggestionsMode)) {
+            source = new TimingSuggestionSource(new SpellerOnlySuggestionSource(languages), metrics);
+        } else if (checkBatchSize > 1) {
+            source = new BatchingSuggestionSource(languages, metrics);
+        } else {
+            source = new TimingSuggestionSource(new FullCheckSuggestionSource(languages), metrics);
+        }
+        if (caches != null) {
+            source = new CachingSuggestionSource(caches, source);
+        }
+        return verifySuggestions ? new VerifyingSuggestionSource(source, new FullCheckSuggestionSource(languages)) : source;
+    }
+
+    /**
+     * @return a source which reads the rows added to the input after the ones it has, until it is stopped
+     */
+    private static FollowingInputSource openFollowingInputSource(Checkpoint checkpoint) throws IOException {
+        int rowNum = checkpoint == null ? 0 : checkpoint.getRowNum();
+        if (!MYSQL_INPUT_SOURCE.equals(inputSourceType)) {
+            long offset = checkpoint == null ? 0 : checkpoint.getInputOffset();
+            return new TailingTsvInputSource(inputCsvFileName, offset, rowNum, followPollIntervalMs);
+        }
+        // the position of a followed database row is its key
+        long lastKey = checkpoint == null ? Long.MIN_VALUE : checkpoint.getInputOffset();
+        return new PollingMySqlInputSource(dbUrl, dbUser, dbPass, CORRECTIONS_TABLE, DEFAULT_CONDITIONS,
+                mysqlKeyColumn, lastKey, rowNum, followBatchSize, followPollIntervalMs);
+    }
+
+    /**
+     * Lets the rows in flight be written and checkpointed when the JVM is asked to stop.
+     */
+    private static void stopOnShutdown(FollowingInputSource source) {
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            source.stop();
+            try {
+                main.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "follow-stopper"));
+    }
+
+    private static InputSource openInputSource(Checkpoint checkpoint) throws IOException {
+        if (!MYSQL_INPUT_SOURCE.equals(inputSourceType)) {
+            long offset = checkpoint == null ? 0 : checkpoint.getInputOffset();
+            int rowNum = checkpoint == null ? 0 : checkpoint.getRowNum();
+            if (tsvReaderThreads > 1) {
+                return new MappedTsvInputSource(inputCsvFileName, offset, rowNum, startingRowNum,
+                        tsvReaderThreads, tsvChunkSize);
+            }
+            return new TsvInputSource(inputCsvFileName, offset, rowNum, startingRowNum);
+        }
+
+        if (mysqlPartitions > 1) {
+            if (sqlLimit != null) {
+                log.warn("sql_limit is not used when reading {} key ranges.", mysqlPartitions);
+            }
+            return new PartitionedMySqlInputSource(dbUrl, dbUser, dbPass, CORRECTIONS_TABLE, DEFAULT_CONDITIONS,
+                    mysqlKeyColumn, mysqlPartitions, mysqlConnections, mysqlPageSize, queueCapacity);
+        }
+
+        log.debug(query);
+        return new MySqlInputSource(dbUrl, dbUser, dbPass, query, mysqlFetchSize);
+    }
+
+    private static Set<String> scanRuleIds() throws IOException {
+        long start = System.currentTimeMillis();
+        log.info("Scanning rule ids. ...");
+
+        Set<String> ruleIds = new HashSet<>();
+        if (MYSQL_INPUT_SOURCE.equals(inputSourceType)) {
+            try (Connection conn = getConnection(dbUrl, dbUser, dbPass);
+                 Statement stmt = getStatement(conn);
+                 ResultSet rs = getRs(stmt, "SELECT DISTINCT rule_id FROM " + CORRECTIONS_TABLE + " WHERE " + DEFAULT_CONDITIONS)) {
+                while (rs.next()) {
+                    ruleIds.add(rs.getString("rule_id"));
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        } else {
+            try (InputSource in = new TsvInputSource(inputCsvFileName)) {
+                InputRow row;
+                while ((row = in.next()) != null) {
+                    ruleIds.add(row.getRuleId());
+                }
+            }
+        }
+
+        log.info("Scanning rule ids. Done in {} ms! found: {}", System.currentTimeMillis() - start, ruleIds);
+        return ruleIds;
     }
 
     private static void initConfig() {
@@ -235,7 +452,7 @@ public class Main {
             return;
         }
 
-        outputCsvFileName = mainProperties.getProperty("output_csv_filename", DEFAULT_OUTPUT_CSV_FILENAME);
+        outputCsvFileName = shardFileName(mainProperties.getProperty("output_csv_filename", DEFAULT_OUTPUT_CSV_FILENAME));
         inputCsvFileName = mainProperties.getProperty("input_csv_filename", DEFAULT_INPUT_CSV_FILENAME);
         dbUrl = mainProperties.getProperty("mysql_connection_string", DEFAULT_DB_URL);
         dbUser = mainProperties.getProperty("mysql_user", DEFAULT_USER);
@@ -252,9 +469,9 @@ public class Main {
         }
 
         if (mainProperties.stringPropertyNames().contains("sql_limit")) {
-            Integer limit = Integer.parseInt(mainProperties.getProperty("sql_limit"));
+            sqlLimit = Integer.parseInt(mainProperties.getProperty("sql_limit"));
 
-            query = DEFAULT_QUERY + String.format(" LIMIT %d", limit);
+            query = DEFAULT_QUERY + String.format(" LIMIT %d", sqlLimit);
         } else {
             query = DEFAULT_QUERY;
         }
@@ -265,83 +482,162 @@ public class Main {
             startingRowNum = DEFAULT_STARTING_ROW_NUM;
         }
 
-        log.info("properties passed: {}", mainProperties.stringPropertyNames());
-    }
+        if (mainProperties.stringPropertyNames().contains("worker_threads")){
+            workerThreads = Integer.parseInt(mainProperties.getProperty("worker_threads"));
+        } else {
+            workerThreads = DEFAULT_WORKER_THREADS;
+        }
 
+        if (mainProperties.stringPropertyNames().contains("queue_capacity")){
+            queueCapacity = Integer.parseInt(mainProperties.getProperty("queue_capacity"));
+        } else {
+            queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        }
 
-    private static List<FeaturesRow> processRow(String sentence, String correction, String covered, String replacement,
-                                                Integer suggestionPos, String morfologik_rule_id) throws SQLException, IOException {
+        if (mainProperties.stringPropertyNames().contains("affinity_window")){
+            affinityWindow = Integer.parseInt(mainProperties.getProperty("affinity_window"));
+        } else {
+            affinityWindow = DEFAULT_AFFINITY_WINDOW;
+        }
 
-        List<FeaturesRow> featuresRows = new ArrayList<>();
+        prescanRuleIds = Boolean.parseBoolean(mainProperties.getProperty("prescan_rule_ids", "false"));
 
-        Pair<String, String> context = Pair.of("", "");
-        int errorStartIdx = -1;
+        suggestionsMode = mainProperties.getProperty("suggestions_mode", FULL_SUGGESTIONS_MODE);
+        verifySuggestions = Boolean.parseBoolean(mainProperties.getProperty("verify_suggestions", "false"));
 
-        int sentencesDifferenceCharIdx = Utils.firstDifferencePosition(sentence, correction);
-        if (sentencesDifferenceCharIdx != -1) {
-            errorStartIdx = Utils.startOfErrorString(sentence, covered, sentencesDifferenceCharIdx);
-            if (errorStartIdx != -1) {
-                context = Utils.extractContext(sentence, covered, errorStartIdx, contextLength);
-            }
+        if (mainProperties.stringPropertyNames().contains("check_batch_size")){
+            checkBatchSize = Integer.parseInt(mainProperties.getProperty("check_batch_size"));
+        } else {
+            checkBatchSize = DEFAULT_CHECK_BATCH_SIZE;
         }
 
-        FeaturesRow featuresRow = new FeaturesRow();
-        featuresRow.setLeftContext(context.getKey());
-        featuresRow.setRightContext(context.getValue());
-        featuresRow.setCoveredString(covered);
-        featuresRow.setReplacementString(replacement);
-        featuresRow.setReplacementPosition(suggestionPos);
-        featuresRow.setSelectedByUser(suggestionPos != 99);
+        if (mainProperties.stringPropertyNames().contains("suggestions_cache_size")){
+            suggestionsCacheSize = Integer.parseInt(mainProperties.getProperty("suggestions_cache_size"));
+        } else {
+            suggestionsCacheSize = DEFAULT_SUGGESTIONS_CACHE_SIZE;
+        }
+        tokenLevelRulePrefixes = Arrays.asList(mainProperties
+                .getProperty("suggestions_cache_token_level_rules", DEFAULT_TOKEN_LEVEL_RULES)
+                .split("\\s*,\\s*"));
 
-        featuresRows.add(featuresRow);
+        inputSourceType = mainProperties.getProperty("input_source", TSV_INPUT_SOURCE);
+        mysqlKeyColumn = mainProperties.getProperty("mysql_key_column", DEFAULT_MYSQL_KEY_COLUMN);
 
-        List<String> replacementsSuggestedByLT = new ArrayList<>();
-        if (errorStartIdx != -1) {
-            List<RuleMatch> matches = languages.getOrDefault(morfologik_rule_id, defaultLT).check(sentence);
-            for (RuleMatch match : matches) {
-                if (match.getFromPos() == errorStartIdx && match.getToPos() == errorStartIdx + covered.length()) {
-                    replacementsSuggestedByLT.addAll(match.getSuggestedReplacements());
-                }
-            }
+        if (mainProperties.stringPropertyNames().contains("mysql_fetch_size")){
+            mysqlFetchSize = Integer.parseInt(mainProperties.getProperty("mysql_fetch_size"));
+        } else {
+            mysqlFetchSize = DEFAULT_MYSQL_FETCH_SIZE;
         }
-        else {
-            log.warn("Sentence not processed: {}", sentence);
+
+        if (mainProperties.stringPropertyNames().contains("mysql_partitions")){
+            mysqlPartitions = Integer.parseInt(mainProperties.getProperty("mysql_partitions"));
+        } else {
+            mysqlPartitions = DEFAULT_MYSQL_PARTITIONS;
         }
-        for (int i = 0; i < replacementsSuggestedByLT.size(); i++) {
-            String processingReplacement = replacementsSuggestedByLT.get(i);
-            if (processingReplacement.equals(replacement)){
-                if(featuresRow.getReplacementPosition() != 99){
-                    featuresRow.setReplacementPosition(i);
-                }
-            }
-            else {
-                FeaturesRow processingFeaturesRow = new FeaturesRow();
-                processingFeaturesRow.setLeftContext(featuresRow.getLeftContext());
-                processingFeaturesRow.setRightContext(featuresRow.getRightContext());
-                processingFeaturesRow.setCoveredString(featuresRow.getCoveredString());
-                processingFeaturesRow.setReplacementString(processingReplacement);
-                processingFeaturesRow.setReplacementPosition(i);
-                processingFeaturesRow.setSelectedByUser(false);
-                featuresRows.add(processingFeaturesRow);
-            }
+
+        if (mainProperties.stringPropertyNames().contains("mysql_connections")){
+            mysqlConnections = Integer.parseInt(mainProperties.getProperty("mysql_connections"));
+        } else {
+            mysqlConnections = DEFAULT_MYSQL_CONNECTIONS;
         }
-        if (replacementsSuggestedByLT.size() == 0 && featuresRow.getReplacementPosition() != 99){
-            featuresRow.setReplacementPosition(0);
+
+        if (mainProperties.stringPropertyNames().contains("mysql_page_size")){
+            mysqlPageSize = Integer.parseInt(mainProperties.getProperty("mysql_page_size"));
+        } else {
+            mysqlPageSize = DEFAULT_MYSQL_PAGE_SIZE;
         }
 
-        return featuresRows;
+        checkpointFileName = perRunFileName(mainProperties, "checkpoint_filename", ".checkpoint");
+        if (mainProperties.stringPropertyNames().contains("checkpoint_frequency_in_number_of_rows")){
+            checkpointFrequency = Integer.parseInt(mainProperties.getProperty("checkpoint_frequency_in_number_of_rows"));
+        } else {
+            checkpointFrequency = DEFAULT_CHECKPOINT_FREQUENCY;
+        }
+        if (mainProperties.stringPropertyNames().contains("checkpoint_frequency_in_seconds")){
+            checkpointInterval = Integer.parseInt(mainProperties.getProperty("checkpoint_frequency_in_seconds"));
+        } else {
+            checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        }
+
+        if (mainProperties.stringPropertyNames().contains("follow_poll_interval_ms")){
+            followPollIntervalMs = Long.parseLong(mainProperties.getProperty("follow_poll_interval_ms"));
+        } else {
+            followPollIntervalMs = DEFAULT_FOLLOW_POLL_INTERVAL_MS;
+        }
+        if (mainProperties.stringPropertyNames().contains("follow_batch_size")){
+            followBatchSize = Integer.parseInt(mainProperties.getProperty("follow_batch_size"));
+        } else {
+            followBatchSize = DEFAULT_FOLLOW_BATCH_SIZE;
+        }
+
+        if (mainProperties.stringPropertyNames().contains("tsv_reader_threads")){
+            tsvReaderThreads = Integer.parseInt(mainProperties.getProperty("tsv_reader_threads"));
+        } else {
+            tsvReaderThreads = DEFAULT_TSV_READER_THREADS;
+        }
+
+        if (mainProperties.stringPropertyNames().contains("tsv_chunk_size_in_bytes")){
+            tsvChunkSize = Long.parseLong(mainProperties.getProperty("tsv_chunk_size_in_bytes"));
+        } else {
+            tsvChunkSize = DEFAULT_TSV_CHUNK_SIZE;
+        }
+
+        outputFormat = mainProperties.getProperty("output_format", CSV_OUTPUT_FORMAT);
+        if (mainProperties.stringPropertyNames().contains("columnar_block_rows")){
+            columnarBlockRows = Integer.parseInt(mainProperties.getProperty("columnar_block_rows"));
+        } else {
+            columnarBlockRows = DEFAULT_COLUMNAR_BLOCK_ROWS;
+        }
+
+        outputCompression = mainProperties.getProperty("output_compression", "none");
+        if (mainProperties.stringPropertyNames().contains("output_part_size_in_bytes")){
+            outputPartSize = Long.parseLong(mainProperties.getProperty("output_part_size_in_bytes"));
+        } else {
+            outputPartSize = DEFAULT_OUTPUT_PART_SIZE;
+        }
+        if (mainProperties.stringPropertyNames().contains("output_buffer_size_in_bytes")){
+            outputBufferSize = Integer.parseInt(mainProperties.getProperty("output_buffer_size_in_bytes"));
+        } else {
+            outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
+        }
+        if (mainProperties.stringPropertyNames().contains("output_buffers")){
+            outputBuffers = Integer.parseInt(mainProperties.getProperty("output_buffers"));
+        } else {
+            outputBuffers = DEFAULT_OUTPUT_BUFFERS;
+        }
+
+        metricsFileName = perRunFileName(mainProperties, "metrics_filename", ".prom");
+        if (mainProperties.stringPropertyNames().contains("metrics_frequency_in_seconds")){
+            metricsFrequency = Integer.parseInt(mainProperties.getProperty("metrics_frequency_in_seconds"));
+        } else {
+            metricsFrequency = DEFAULT_METRICS_FREQUENCY;
+        }
+
+        if (mainProperties.stringPropertyNames().contains("row_timeout_ms")){
+            rowTimeoutMs = Long.parseLong(mainProperties.getProperty("row_timeout_ms"));
+        } else {
+            rowTimeoutMs = DEFAULT_ROW_TIMEOUT_MS;
+        }
+        if (mainProperties.stringPropertyNames().contains("max_abandoned_workers")){
+            maxAbandonedWorkers = Integer.parseInt(mainProperties.getProperty("max_abandoned_workers"));
+        } else {
+            maxAbandonedWorkers = DEFAULT_MAX_ABANDONED_WORKERS;
+        }
+        quarantineFileName = perRunFileName(mainProperties, "quarantine_filename", ".quarantine.tsv");
+
+        log.info("properties passed: {}", mainProperties.stringPropertyNames());
     }
 
-}
+    /**
+     * @return the given file name, or the output file name with the suffix, made distinct for every shard
+     */
+    private static String perRunFileName(Properties mainProperties, String key, String suffix) {
+        String fileName = mainProperties.getProperty(key);
+        return fileName == null ? outputCsvFileName + suffix : shardFileName(fileName);
+    }
+
+    private static String shardFileName(String fileName) {
+        return shards > 0 ? Shards.shardFileName(fileName, shard, shards) : fileName;
+    }
 
-@Getter
-@Setter
-@ToString
-class FeaturesRow {
-    private String leftContext;
-    private String rightContext;
-    private String coveredString;
-    private String replacementString;
-    private Integer replacementPosition;
-    private Boolean selectedByUser;
 }
@@ -0,0 +1,189 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the corrections dump like {@link TsvInputSource}, but decodes it on several threads.
+ * <p>
+ * The file is memory-mapped. A splitter thread finds the record boundaries with {@link TsvRecordReader#skip()}
+ * (which knows about escapes and quoted multi-line fields) and cuts the file into chunks of whole records,
+ * the chunks are decoded in parallel and handed out in file order, so the rows get the same numbers
+ * and positions as with the sequential reader.
+ */
+@Slf4j
+public class MappedTsvInputSource implements InputSource {
+    private static final long WINDOW_SIZE = 1L << 28;
+    private static final List<InputRow> END_OF_INPUT = new ArrayList<>(0);
+
+    private final FileChannel channel;
+    private final ExecutorService parsers;
+    private final BlockingQueue<Future<List<InputRow>>> chunks;
+    private final Thread splitter;
+
+    private Iterator<InputRow> current = Collections.emptyIterator();
+    private boolean done = false;
+
+    /**
+     * @param offset         byte offset of the first record to read
+     * @param rowNum         number of rows before that offset
+     * @param startingRowNum rows before this one are skipped without being decoded
+     * @param chunkSize      approximate number of bytes decoded by one task
+     */
+    public MappedTsvInputSource(String fileName, long offset, int rowNum, int startingRowNum,
+                                int threads, long chunkSize) throws IOException {
+        log.info("Mapping {} at byte {}, row {}, {} reader threads. ...", fileName, offset, rowNum + 1, threads);
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        this.parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "tsv-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunks = new ArrayBlockingQueue<>(threads * 2);
+
+        this.splitter = new Thread(() -> split(offset, rowNum, startingRowNum, chunkSize), "tsv-splitter");
+        this.splitter.setDaemon(true);
+        this.splitter.start();
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        while (!current.hasNext()) {
+            if (done) {
+                return null;
+            }
+
+            List<InputRow> rows;
+            try {
+                rows = chunks.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted when waiting for rows", e);
+            } catch (ExecutionException e) {
+                done = true;
+                throw e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException(e.getCause());
+            }
+
+            if (rows == END_OF_INPUT) {
+                done = true;
+                return null;
+            }
+            current = rows.iterator();
+        }
+        return current.next();
+    }
+
+    private void split(long offset, int rowNum, int startingRowNum, long chunkSize) {
+        try {
+            long fileSize = channel.size();
+            TsvRecordReader reader = new TsvRecordReader(new MappedInputStream(channel, offset, fileSize), offset);
+
+            long chunkStart = offset;
+            int chunkRows = 0;
+            while (reader.skip()) {
+                chunkRows++;
+                if (reader.offset() - chunkStart >= chunkSize) {
+                    submit(chunkStart, reader.offset(), rowNum, chunkRows, startingRowNum);
+                    rowNum += chunkRows;
+                    chunkStart = reader.offset();
+                    chunkRows = 0;
+                }
+            }
+            if (chunkRows > 0) {
+                submit(chunkStart, reader.offset(), rowNum, chunkRows, startingRowNum);
+            }
+            chunks.put(CompletableFuture.completedFuture(END_OF_INPUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            CompletableFuture<List<InputRow>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                chunks.put(failed);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void submit(long start, long end, int rowNum, int rows, int startingRowNum) throws InterruptedException {
+        chunks.put(parsers.submit(() -> parse(start, end, rowNum, rows, startingRowNum)));
+    }
+
+    private List<InputRow> parse(long start, long end, int rowNum, int rows, int startingRowNum) throws IOException {
+        List<InputRow> result = new ArrayList<>(rows);
+        TsvRecordReader reader = new TsvRecordReader(new MappedInputStream(channel, start, end), start);
+        for (int r = 0; r < rows; r++) {
+            rowNum++;
+            if (rowNum < startingRowNum) {
+                reader.skip();
+                continue;
+            }
+            result.add(TsvInputSource.toInputRow(rowNum, reader.next(), reader.offset()));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        splitter.interrupt();
+        parsers.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * Reads [start, end) of the file through read-only mappings of at most {@link #WINDOW_SIZE} bytes.
+     */
+    private static class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long windowEnd;
+        private MappedByteBuffer window;
+
+        private MappedInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.end = end;
+            this.windowEnd = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (window == null || !window.hasRemaining()) {
+                if (windowEnd >= end) {
+                    return -1;
+                }
+                long size = Math.min(WINDOW_SIZE, end - windowEnd);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, size);
+                windowEnd += size;
+            }
+            int read = Math.min(len, window.remaining());
+            window.get(b, off, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Counters of a run, updated by all the pipeline threads: time spent per stage, LanguageTool check latency
+ * per rule id, written rows and features, and failed rows by exception class.
+ * <p>
+ * Available over JMX, as a Prometheus text file and as a summary in the log.
+ */
+@Slf4j
+public class Metrics implements MetricsMXBean {
+    static final String OBJECT_NAME = "io.github.oserikov.languagetool:type=Metrics";
+    private static final String PREFIX = "features_extractor_";
+
+    public enum Stage {
+        /** reading and parsing input records */
+        PARSE,
+        /** locating the error and extracting its context */
+        CONTEXT,
+        /** getting the suggestions from LanguageTool */
+        CHECK,
+        /** writing the features */
+        WRITE
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Stage, LongAdder> stageNanos = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> stageCalls = new EnumMap<>(Stage.class);
+    private final ConcurrentMap<String, LatencyHistogram> checkLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder features = new LongAdder();
+
+    public Metrics() {
+        for (Stage stage : Stage.values()) {
+            stageNanos.put(stage, new LongAdder());
+            stageCalls.put(stage, new LongAdder());
+        }
+    }
+
+    public void stage(Stage stage, long nanos) {
+        stageNanos.get(stage).add(nanos);
+        stageCalls.get(stage).increment();
+    }
+
+    /**
+     * Records a LanguageTool check, both as the {@link Stage#CHECK} stage and in the latency histogram of the rule id.
+     */
+    public void checked(String ruleId, long nanos) {
+        stage(Stage.CHECK, nanos);
+        checkLatencies.computeIfAbsent(ruleId, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void rowWritten(int featuresCount) {
+        rows.increment();
+        features.add(featuresCount);
+    }
+
+    public void error(Throwable e) {
+        errors.computeIfAbsent(e.getClass().getName(), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, a failure is only logged.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("metrics are not available over JMX.", e);
+        }
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getFeatures() {
+        return features.sum();
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        return rows.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public double getFeaturesPerSecond() {
+        return features.sum() / elapsedSeconds();
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    @Override
+    public Map<String, Long> getStageMillis() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Stage stage : Stage.values()) {
+            result.put(stage.name().toLowerCase(), stageNanos.get(stage).sum() / 1_000_000);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getCheckP50Millis() {
+        return perRuleId(histogram -> histogram.percentileNanos(0.5) / 1e6);
+    }
+
+    @Override
+    public Map<String, Double> getCheckP99Millis() {
+        return perRuleId(histogram -> histogram.percentileNanos(0.99) / 1e6);
+    }
+
+    @Override
+    public Map<String, Double> getCheckMaxMillis() {
+        return perRuleId(histogram -> histogram.maxNanos() / 1e6);
+    }
+
+    private Map<String, Double> perRuleId(ToDoubleFunction<LatencyHistogram> value) {
+        Map<String, Double> result = new TreeMap<>();
+        checkLatencies.forEach((ruleId, histogram) -> result.put(ruleId, value.applyAsDouble(histogram)));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((exception, count) -> result.put(exception, count.sum()));
+        return result;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format to a temporary file and renames it,
+     * so a scraper never sees a partial file.
+     */
+    public void save(String fileName) throws IOException {
+        Utils.writeAtomically(fileName, out -> {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writePrometheus(writer);
+            writer.flush();
+        });
+    }
+
+    void writePrometheus(PrintWriter out) {
+        header(out, "rows_total", "counter", "Rows written.");
+        out.printf(Locale.ROOT, "%srows_total %d\n", PREFIX, getRows());
+        header(out, "features_total", "counter", "Feature rows written.");
+        out.printf(Locale.ROOT, "%sfeatures_total %d\n", PREFIX, getFeatures());
+        header(out, "rows_per_second", "gauge", "Rows written per second since the start.");
+        out.printf(Locale.ROOT, "%srows_per_second %f\n", PREFIX, getRowsPerSecond());
+        header(out, "features_per_second", "gauge", "Feature rows written per second since the start.");
+        out.printf(Locale.ROOT, "%sfeatures_per_second %f\n", PREFIX, getFeaturesPerSecond());
+
+        header(out, "stage_seconds_total", "counter", "Time spent per stage, summed over threads.");
+        for (Stage stage : Stage.values()) {
+            out.printf(Locale.ROOT, "%sstage_seconds_total{stage=\"%s\"} %f\n", PREFIX, stage.name().toLowerCase(),
+                    stageNanos.get(stage).sum() / 1e9);
+        }
+        header(out, "stage_calls_total", "counter", "Calls per stage.");
+        for (Stage stage : Stage.values()) {
+            out.printf(Locale.ROOT, "%sstage_calls_total{stage=\"%s\"} %d\n", PREFIX, stage.name().toLowerCase(),
+                    stageCalls.get(stage).sum());
+        }
+
+        Map<String, LatencyHistogram> latencies = new TreeMap<>(checkLatencies);
+        header(out, "check_seconds", "summary", "LanguageTool check latency per rule id.");
+        latencies.forEach((ruleId, histogram) -> {
+            String label = escape(ruleId);
+            out.printf(Locale.ROOT, "%scheck_seconds{rule_id=\"%s\",quantile=\"0.5\"} %f\n", PREFIX, label, histogram.percentileNanos(0.5) / 1e9);
+            out.printf(Locale.ROOT, "%scheck_seconds{rule_id=\"%s\",quantile=\"0.99\"} %f\n", PREFIX, label, histogram.percentileNanos(0.99) / 1e9);
+            out.printf(Locale.ROOT, "%scheck_seconds_sum{rule_id=\"%s\"} %f\n", PREFIX, label, histogram.sumNanos() / 1e9);
+            out.printf(Locale.ROOT, "%scheck_seconds_count{rule_id=\"%s\"} %d\n", PREFIX, label, histogram.count());
+        });
+        header(out, "check_max_seconds", "gauge", "Slowest LanguageTool check per rule id.");
+        latencies.forEach((ruleId, histogram) ->
+                out.printf(Locale.ROOT, "%scheck_max_seconds{rule_id=\"%s\"} %f\n", PREFIX, escape(ruleId), histogram.maxNanos() / 1e9));
+
+        header(out, "errors_total", "counter", "Failed rows by exception class.");
+        getErrors().forEach((exception, count) ->
+                out.printf(Locale.ROOT, "%serrors_total{exception=\"%s\"} %d\n", PREFIX, escape(exception), count));
+    }
+
+    private static void header(PrintWriter out, String name, String type, String help) {
+        out.printf(Locale.ROOT, "# HELP %s%s %s\n", PREFIX, name, help);
+        out.printf(Locale.ROOT, "# TYPE %s%s %s\n", PREFIX, name, type);
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public void logSummary() {
+        log.info("rows: {}, features: {}, rows/s: {}, features/s: {}", getRows(), getFeatures(),
+                String.format("%.1f", getRowsPerSecond()), String.format("%.1f", getFeaturesPerSecond()));
+        log.info("time per stage, ms: {}", getStageMillis());
+        new TreeMap<>(checkLatencies).forEach((ruleId, histogram) ->
+                log.info("check {}: {} calls, p50 {} ms, p99 {} ms, max {} ms", ruleId, histogram.count(),
+                        String.format("%.2f", histogram.percentileNanos(0.5) / 1e6),
+                        String.format("%.2f", histogram.percentileNanos(0.99) / 1e6),
+                        String.format("%.2f", histogram.maxNanos() / 1e6)));
+        if (!errors.isEmpty()) {
+            log.info("errors: {}", getErrors());
+        }
+    }
+}
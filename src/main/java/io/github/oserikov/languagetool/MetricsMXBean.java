@@ -0,0 +1,32 @@
+package io.github.oserikov.languagetool;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+    long getRows();
+
+    long getFeatures();
+
+    double getRowsPerSecond();
+
+    double getFeaturesPerSecond();
+
+    /**
+     * @return cumulative milliseconds spent in every stage, summed over the threads running it
+     */
+    Map<String, Long> getStageMillis();
+
+    Map<String, Double> getCheckP50Millis();
+
+    Map<String, Double> getCheckP99Millis();
+
+    Map<String, Double> getCheckMaxMillis();
+
+    /**
+     * @return number of failed rows by exception class
+     */
+    Map<String, Long> getErrors();
+}
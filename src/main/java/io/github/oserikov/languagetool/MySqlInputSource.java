@@ -0,0 +1,79 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.*;
+
+import static io.github.oserikov.languagetool.DBUtils.*;
+
+/**
+ * Streams the corrections straight from the database with a forward-only cursor.
+ */
+@Slf4j
+public class MySqlInputSource implements InputSource {
+    /**
+     * The columns {@link #toInputRow} reads.
+     */
+    static final String COLUMNS = "sentence, correction, covered, replacement, suggestion_pos, rule_id, language";
+
+    private final Connection conn;
+    private final PreparedStatement stmt;
+    private final ResultSet rs;
+    private int rowNum = 0;
+
+    public MySqlInputSource(String dbUrl, String dbUser, String dbPass, String query, int fetchSize) throws IOException {
+        try {
+            conn = getConnection(withCursorFetch(dbUrl, fetchSize), dbUser, dbPass);
+            stmt = getStreamingStatement(conn, query, fetchSize);
+            log.info("Creating ResultSet. ...");
+            rs = stmt.executeQuery();
+            log.info("Creating ResultSet. Done!");
+        } catch (SQLException e) {
+            throw new IOException("issue when querying the corrections", e);
+        }
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        try {
+            if (!rs.next()) {
+                return null;
+            }
+            rowNum++;
+            return toInputRow(rowNum, rs);
+        } catch (SQLException e) {
+            throw new IOException("issue when reading row " + (rowNum + 1), e);
+        }
+    }
+
+    static InputRow toInputRow(int rowNum, ResultSet rs) throws SQLException {
+        return toInputRow(rowNum, rs, -1);
+    }
+
+    /**
+     * The one mapping of the corrections columns to a row, for all the database sources.
+     */
+    static InputRow toInputRow(int rowNum, ResultSet rs, long position) throws SQLException {
+        return InputRow.of(rowNum,
+                rs.getString("sentence"),
+                rs.getString("correction"),
+                rs.getString("covered"),
+                rs.getString("replacement"),
+                rs.getString("suggestion_pos"),
+                rs.getString("rule_id"),
+                rs.getString("language"),
+                position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            rs.close();
+            stmt.close();
+            conn.close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,612 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+/**
+ * Reader -> N workers -> ordered writer.
+ * <p>
+ * The reader parses input records on its own thread, every worker owns a {@link RowProcessor}
+ * (and so its own JLanguageTool instances), and the writer (the calling thread) writes results
+ * strictly in input order. At most {@code queueCapacity} rows are in flight at any time,
+ * which bounds both the work queues and the writer's reorder buffer. The {@link FeaturesBatch}es carrying
+ * the results go back to a pool once written, so the workers reuse their arrays.
+ * <p>
+ * By default the workers take rows from one shared queue. With an affinity window every worker has its own queue
+ * and the reader routes the rows by rule id, see {@link #setAffinityWindow(int)}.
+ * <p>
+ * With a row timeout a watchdog abandons the rows which run too long, see {@link #setRowTimeout(long, QuarantineWriter)}.
+ */
+@Slf4j
+public class ParallelPipeline {
+    private static final ProcessedRow WORKER_DONE = new ProcessedRow(-1, null, null, null, -1);
+    private static final ProcessedRow ABORTED = new ProcessedRow(-1, null, null, null, -1);
+    private static final InputTask POISON = new InputTask(-1, null);
+    private static final long IDLE_POLL_MS = 1000;
+
+    private final int workersCount;
+    private final int queueCapacity;
+    private final int startingRowNum;
+    private final int logFrequency;
+    private final Supplier<RowProcessor> processorFactory;
+
+    private final List<BlockingQueue<InputTask>> workerQueues = new ArrayList<>();
+    private final BlockingQueue<ProcessedRow> outputQueue = new LinkedBlockingQueue<>();
+    private final Semaphore inFlight;
+    private final BlockingQueue<FeaturesBatch> freeBatches;
+    private Runnable progressListener = () -> {};
+    private Checkpointer checkpointer;
+    private int initialErrorsCnt = 0;
+    private Metrics metrics = new Metrics();
+    private int affinityWindow = 0;
+    private int checkBatchSize = 1;
+    private final Map<String, Integer> affineWorkers = new HashMap<>();
+    private AtomicIntegerArray assignedRows;
+    private long dispatchedRows = 0;
+    private long spilledRows = 0;
+    private long rowTimeoutMs = 0;
+    private int maxAbandonedWorkers = Integer.MAX_VALUE;
+    private int abandonedWorkers = 0;
+    private volatile IOException abortError;
+    private QuarantineWriter quarantine;
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger workerIds = new AtomicInteger();
+    private volatile boolean finished = false;
+    private int errorsCnt = 0;
+
+    public ParallelPipeline(int workersCount, int queueCapacity, int startingRowNum, int logFrequency,
+                            Supplier<RowProcessor> processorFactory) {
+        this.workersCount = workersCount;
+        this.queueCapacity = queueCapacity;
+        this.startingRowNum = startingRowNum;
+        this.logFrequency = logFrequency;
+        this.processorFactory = processorFactory;
+        this.inFlight = new Semaphore(queueCapacity);
+        this.freeBatches = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * @param progressListener called on the writer thread every time the progress is logged
+     */
+    public void onProgress(Runnable progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @param errorsCnt errors of the previous runs, when resuming from a checkpoint
+     */
+    public void setCheckpointer(Checkpointer checkpointer, int errorsCnt) {
+        this.checkpointer = checkpointer;
+        this.initialErrorsCnt = errorsCnt;
+    }
+
+    /**
+     * @param metrics gets the parse and write times, the written rows and the errors
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enables language-affine scheduling. The reader collects {@code affinityWindow} rows, groups them by rule id
+     * and gives every group to the worker which got that rule id before, so each worker keeps checking the same
+     * few languages and their dictionaries and taggers stay warm in its caches. The rule id's worker only gets
+     * rows up to its fair share of the unprocessed ones, the rest of the group spills over to the least loaded
+     * workers, so a dominant language is still spread over all the workers.
+     * The writer puts the rows back in input order.
+     *
+     * @param affinityWindow rows grouped at once, 0 disables it. Capped at half the queue capacity: the rows of
+     *                       a window are in flight before any of them is processed, and the workers need
+     *                       rows of the previous window to work on meanwhile.
+     */
+    public void setAffinityWindow(int affinityWindow) {
+        this.affinityWindow = Math.min(affinityWindow, Math.max(1, queueCapacity / 2));
+    }
+
+    /**
+     * Lets every worker take up to {@code checkBatchSize} queued rows at once and announce them to its
+     * {@link RowProcessor#prefetch(List) suggestion source}, which can check their sentences together.
+     * Rows are never held back to fill a batch: a worker takes what is queued.
+     */
+    public void setCheckBatchSize(int checkBatchSize) {
+        this.checkBatchSize = Math.max(1, checkBatchSize);
+    }
+
+    /**
+     * Bounds the time a row may take. A watchdog abandons the rows running longer: the writer gets a timeout
+     * error for the row right away and writes the row to the quarantine file, and the remaining rows of the
+     * worker go to a new worker with a fresh {@link RowProcessor}. The old worker's thread is interrupted
+     * (the shared n-gram indexes are memory-mapped, an interrupt doesn't close them),
+     * it drops the result of the row whenever it gets out of it and ends.
+     * <p>
+     * A row stuck in a loop doesn't notice the interrupt, and its worker keeps all its JLanguageTool instances
+     * meanwhile, so the run fails once more than {@code maxAbandonedWorkers} workers are abandoned.
+     * <p>
+     * With check batches the first row of a batch also waits for the check of the others,
+     * so the timeout has to allow for a whole batch.
+     *
+     * @param rowTimeoutMs 0 disables the watchdog
+     * @param quarantine   gets the abandoned rows, may be null
+     */
+    public void setRowTimeout(long rowTimeoutMs, int maxAbandonedWorkers, QuarantineWriter quarantine) {
+        this.rowTimeoutMs = rowTimeoutMs;
+        this.maxAbandonedWorkers = maxAbandonedWorkers;
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * @return the errors of the last run, with the ones of the previous runs given with the checkpointer
+     */
+    public int getErrorsCnt() {
+        return errorsCnt;
+    }
+
+    /**
+     * Processes all the records and writes the features with the given writer.
+     *
+     * @return the number of rows read
+     */
+    public int run(InputSource source, FeaturesWriter writer) throws InterruptedException, IOException {
+        workerQueues.clear();
+        assignedRows = new AtomicIntegerArray(workersCount);
+        BlockingQueue<InputTask> sharedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int w = 0; w < workersCount; w++) {
+            workerQueues.add(affinityWindow > 0 ? new ArrayBlockingQueue<>(queueCapacity) : sharedQueue);
+        }
+
+        int[] rowsRead = new int[1];
+        Thread reader = new Thread(() -> rowsRead[0] = read(source), "reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        workers.clear();
+        finished = false;
+        abandonedWorkers = 0;
+        abortError = null;
+        for (int w = 0; w < workersCount; w++) {
+            startWorker(new Worker(w, new ArrayList<>(), false));
+        }
+        Thread watchdog = null;
+        if (rowTimeoutMs > 0) {
+            watchdog = new Thread(this::watch, "watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+
+        try {
+            write(writer);
+        } finally {
+            finished = true;
+        }
+        reader.join();
+        if (watchdog != null) {
+            watchdog.join();
+        }
+        if (affinityWindow > 0) {
+            log.info("{} of {} rows spilled over from their rule id's worker.", spilledRows, dispatchedRows);
+        }
+        return rowsRead[0];
+    }
+
+    private int read(InputSource source) {
+        int i = 0;
+        long seq = 0;
+        List<InputTask> window = new ArrayList<>(affinityWindow);
+        try {
+            InputRow row;
+            long parseStart = System.nanoTime();
+            while ((row = source.next()) != null) {
+                metrics.stage(Metrics.Stage.PARSE, System.nanoTime() - parseStart);
+                i = row.getRowNum();
+                if (i < startingRowNum) {
+                    parseStart = System.nanoTime();
+                    continue;
+                }
+
+                inFlight.acquire();
+                InputTask task = new InputTask(seq++, row);
+                if (affinityWindow > 0) {
+                    window.add(task);
+                    if (window.size() == affinityWindow) {
+                        dispatch(window);
+                    }
+                } else {
+                    workerQueues.get(0).put(task);
+                }
+                parseStart = System.nanoTime();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Error! reader interrupted on row {}.", i);
+        } catch (IOException | RuntimeException e) {
+            metrics.error(e);
+            log.error("Error! issue when reading row {}.", i + 1, e);
+        } finally {
+            dispatch(window);
+            for (BlockingQueue<InputTask> queue : workerQueues) {
+                putUninterruptibly(queue, POISON);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Sends the window's rows to the workers group by group, see {@link #setAffinityWindow(int)}.
+     * Never blocks for long: the queues can hold all the rows in flight.
+     */
+    private void dispatch(List<InputTask> window) {
+        Map<String, List<InputTask>> groups = new LinkedHashMap<>();
+        for (InputTask task : window) {
+            groups.computeIfAbsent(task.row.getRuleId(), ruleId -> new ArrayList<>()).add(task);
+        }
+
+        // small groups first, so they get their own workers and the big ones fill up what is left
+        List<Map.Entry<String, List<InputTask>>> bySize = new ArrayList<>(groups.entrySet());
+        bySize.sort(Comparator.comparingInt(group -> group.getValue().size()));
+
+        int undispatched = window.size();
+        for (Map.Entry<String, List<InputTask>> group : bySize) {
+            List<InputTask> tasks = group.getValue();
+            int from = 0;
+            while (from < tasks.size()) {
+                int leastLoaded = 0;
+                int totalAssigned = 0;
+                for (int w = 0; w < workersCount; w++) {
+                    totalAssigned += assignedRows.get(w);
+                    if (assignedRows.get(w) < assignedRows.get(leastLoaded)) {
+                        leastLoaded = w;
+                    }
+                }
+                int fairShare = (totalAssigned + undispatched + workersCount - 1) / workersCount;
+
+                Integer worker = affineWorkers.get(group.getKey());
+                boolean spilled = false;
+                if (worker == null) {
+                    worker = leastLoaded;
+                    affineWorkers.put(group.getKey(), worker);
+                } else if (assignedRows.get(worker) >= fairShare) {
+                    worker = leastLoaded;
+                    spilled = true;
+                }
+
+                int count = Math.min(tasks.size() - from, Math.max(1, fairShare - assignedRows.get(worker)));
+                dispatchedRows += count;
+                if (spilled) {
+                    spilledRows += count;
+                }
+                assignedRows.addAndGet(worker, count);
+                for (InputTask task : tasks.subList(from, from + count)) {
+                    putUninterruptibly(workerQueues.get(worker), task);
+                }
+                from += count;
+                undispatched -= count;
+            }
+        }
+        window.clear();
+    }
+
+    private void startWorker(Worker worker) {
+        worker.thread = new Thread(() -> work(worker), "worker-" + workerIds.getAndIncrement());
+        worker.thread.setDaemon(true);
+        workers.add(worker);
+        worker.thread.start();
+    }
+
+    private void work(Worker worker) {
+        BlockingQueue<InputTask> inputQueue = workerQueues.get(worker.queueIdx);
+        RowProcessor processor = null;
+        RuntimeException initError = null;
+        long start = System.currentTimeMillis();
+        try {
+            processor = processorFactory.get();
+            log.info("{} started in {} ms.", Thread.currentThread().getName(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Error! issue when initializing {}.", Thread.currentThread().getName(), e);
+            initError = e;
+        }
+
+        // a replacement worker starts with the rows its predecessor did not get to
+        List<InputTask> tasks = worker.initialTasks;
+        List<InputRow> rows = new ArrayList<>(checkBatchSize);
+        boolean abandoned = false;
+        try {
+            while (!tasks.isEmpty() || !worker.inputEnded) {
+                if (tasks.isEmpty()) {
+                    tasks.add(inputQueue.take());
+                    if (checkBatchSize > 1) {
+                        inputQueue.drainTo(tasks, checkBatchSize - 1);
+                    }
+
+                    // only poisons follow the first one, the ones taken for the other workers go back
+                    int poisonIdx = tasks.indexOf(POISON);
+                    if (poisonIdx != -1) {
+                        worker.inputEnded = true;
+                        for (int t = poisonIdx + 1; t < tasks.size(); t++) {
+                            putUninterruptibly(inputQueue, POISON);
+                        }
+                        tasks.subList(poisonIdx, tasks.size()).clear();
+                    }
+                    assignedRows.addAndGet(worker.queueIdx, -tasks.size());
+                }
+
+                if (processor != null && tasks.size() > 1) {
+                    rows.clear();
+                    for (InputTask task : tasks) {
+                        rows.add(task.row);
+                    }
+                    processor.prefetch(rows);
+                }
+                for (int t = 0; t < tasks.size(); t++) {
+                    if (!process(worker, processor, initError, tasks, t)) {
+                        abandoned = true;
+                        log.warn("{} finished abandoned row {} after {} ms and stops.", Thread.currentThread().getName(),
+                                tasks.get(t).row.getRowNum(), (System.nanoTime() - worker.currentStartNanos) / 1_000_000);
+                        return;
+                    }
+                }
+                tasks.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Error! {} interrupted.", Thread.currentThread().getName());
+        } finally {
+            workers.remove(worker);
+            // the watchdog took the row from this worker and started a replacement, which reports instead.
+            // Decided by the worker's own finish(), so exactly one of the two reports.
+            if (!abandoned) {
+                putUninterruptibly(outputQueue, WORKER_DONE);
+            }
+        }
+    }
+
+    /**
+     * @return false if the watchdog abandoned the row meanwhile
+     */
+    private boolean process(Worker worker, RowProcessor processor, RuntimeException initError,
+                            List<InputTask> tasks, int taskIdx) throws InterruptedException {
+        InputTask task = tasks.get(taskIdx);
+        InputRow row = task.row;
+        if (processor == null) {
+            outputQueue.put(new ProcessedRow(task.seq, row, null, initError, -1));
+            return true;
+        }
+        worker.tasks = tasks;
+        worker.currentIdx = taskIdx;
+        worker.currentStartNanos = System.nanoTime();
+        worker.current = task;
+
+        FeaturesBatch batch = freeBatches.poll();
+        if (batch == null) {
+            batch = new FeaturesBatch();
+        }
+        Exception error = null;
+        try {
+            processor.processRow(row, batch);
+        } catch (Exception e) {
+            error = e;
+        }
+        worker.current = null;
+
+        if (!task.finish()) {
+            batch.clear();
+            freeBatches.offer(batch);
+            return false;
+        }
+        if (error == null) {
+            outputQueue.put(new ProcessedRow(task.seq, row, batch, null, -1));
+        } else {
+            batch.clear();
+            freeBatches.offer(batch);
+            outputQueue.put(new ProcessedRow(task.seq, row, null, error, -1));
+        }
+        return true;
+    }
+
+    private void watch() {
+        long interval = Math.max(10, Math.min(1000, rowTimeoutMs / 4));
+        while (!finished) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            for (Worker worker : workers) {
+                InputTask task = worker.current;
+                if (task == null || worker.abandoned) {
+                    continue;
+                }
+                // the start time may already be the next row's, that only makes the elapsed time shorter
+                long elapsedMs = (now - worker.currentStartNanos) / 1_000_000;
+                // the worker finishes the row with the same call, so only one of the two gets it
+                if (elapsedMs < rowTimeoutMs || !task.finish()) {
+                    continue;
+                }
+
+                // the worker is still in the row, its task list does not change any more
+                worker.abandoned = true;
+                abandonedWorkers++;
+                List<InputTask> remaining = new ArrayList<>(worker.tasks.subList(worker.currentIdx + 1, worker.tasks.size()));
+                log.warn("{} is on row {} for {} ms, abandoning it. {} more rows go to a new worker.",
+                        worker.thread.getName(), task.row.getRowNum(), elapsedMs, remaining.size());
+                TimeoutException timeout = new TimeoutException("row took more than " + rowTimeoutMs + " ms");
+                putUninterruptibly(outputQueue, new ProcessedRow(task.seq, task.row, null, timeout, elapsedMs));
+                worker.thread.interrupt();
+
+                if (abandonedWorkers > maxAbandonedWorkers) {
+                    abortError = new IOException(abandonedWorkers + " workers were abandoned, more than the "
+                            + maxAbandonedWorkers + " allowed: their threads may still hold their JLanguageTool instances."
+                            + " Check the quarantined rows, or raise max_abandoned_workers or row_timeout_ms.");
+                    log.error("Error! {}", abortError.getMessage());
+                    putUninterruptibly(outputQueue, ABORTED);
+                    return;
+                }
+                startWorker(new Worker(worker.queueIdx, remaining, worker.inputEnded));
+            }
+        }
+    }
+
+    private void write(FeaturesWriter writer) throws InterruptedException, IOException {
+        Map<Long, ProcessedRow> pending = new HashMap<>();
+        long nextSeq = 0;
+        InputRow lastRow = null;
+        int errorsCnt = initialErrorsCnt;
+        int workersDone = 0;
+
+        while (workersDone < workersCount) {
+            ProcessedRow processed = outputQueue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            if (processed == null) {
+                // nothing to write for a while, e.g. a followed input has no new rows
+                if (checkpointer != null) {
+                    checkpointer.saveIfDue();
+                }
+                continue;
+            }
+            if (processed == WORKER_DONE) {
+                workersDone++;
+                continue;
+            }
+            if (processed == ABORTED) {
+                throw abortError;
+            }
+            pending.put(processed.seq, processed);
+
+            while ((processed = pending.remove(nextSeq)) != null) {
+                nextSeq++;
+                inFlight.release();
+
+                InputRow row = processed.row;
+                lastRow = row;
+                if (row.getRowNum() % logFrequency == 0) {
+                    log.info("processed {} rows. ...", row.getRowNum());
+                    progressListener.run();
+                }
+
+                if (processed.error != null) {
+                    Exception e = processed.error;
+                    log.error("Error! {} {}. On row: {}, {}, {}, {}, {}, {}, {}", e.getClass(), e.getMessage(),
+                            row.getSentence(), row.getCorrection(), row.getCovered(), row.getReplacement(),
+                            row.getSuggestionPos(), row.getRuleId(), row.getLanguage());
+                    errorsCnt += 1;
+                    metrics.error(e);
+                    if (processed.quarantinedAfterMs >= 0 && quarantine != null) {
+                        quarantine.write(row, processed.quarantinedAfterMs);
+                    }
+                } else {
+                    long writeStart = System.nanoTime();
+                    writer.write(processed.features);
+                    metrics.stage(Metrics.Stage.WRITE, System.nanoTime() - writeStart);
+                    metrics.rowWritten(processed.features.features());
+                    // at most queueCapacity batches are in flight, so the pool never overflows
+                    processed.features.clear();
+                    freeBatches.offer(processed.features);
+                }
+
+                if (checkpointer != null) {
+                    checkpointer.rowWritten(row, errorsCnt);
+                }
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            log.error("Error! {} processed rows were not written.", pending.size());
+        }
+        if (checkpointer != null && lastRow != null) {
+            checkpointer.save(lastRow, errorsCnt);
+        }
+        log.info("processed {} rows with {} errors. Done!", lastRow == null ? 0 : lastRow.getRowNum(), errorsCnt);
+        this.errorsCnt = errorsCnt;
+    }
+
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(element);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class InputTask {
+        private final long seq;
+        private final InputRow row;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private InputTask(long seq, InputRow row) {
+            this.seq = seq;
+            this.row = row;
+        }
+
+        /**
+         * @return true for the one caller, the worker or the watchdog, which gets to report the row
+         */
+        private boolean finish() {
+            return finished.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * A worker thread and what the watchdog needs to know about it.
+     */
+    private static class Worker {
+        private final int queueIdx;
+        private final List<InputTask> initialTasks;
+        private Thread thread;
+        // got its poison, a replacement must not wait for one
+        private volatile boolean inputEnded;
+
+        private volatile List<InputTask> tasks;
+        private volatile int currentIdx;
+        private volatile long currentStartNanos;
+        // written last, so the watchdog sees the rest when it sees the task
+        private volatile InputTask current;
+        private volatile boolean abandoned = false;
+
+        private Worker(int queueIdx, List<InputTask> initialTasks, boolean inputEnded) {
+            this.queueIdx = queueIdx;
+            this.initialTasks = initialTasks;
+            this.inputEnded = inputEnded;
+        }
+    }
+
+    private static class ProcessedRow {
+        private final long seq;
+        private final InputRow row;
+        private final FeaturesBatch features;
+        private final Exception error;
+        private final long quarantinedAfterMs; // -1 unless the watchdog abandoned the row
+
+        private ProcessedRow(long seq, InputRow row, FeaturesBatch features, Exception error, long quarantinedAfterMs) {
+            this.seq = seq;
+            this.row = row;
+            this.features = features;
+            this.error = error;
+            this.quarantinedAfterMs = quarantinedAfterMs;
+        }
+    }
+}
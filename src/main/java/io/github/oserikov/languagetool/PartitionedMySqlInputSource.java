@@ -0,0 +1,184 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static io.github.oserikov.languagetool.DBUtils.*;
+
+/**
+ * Splits the corrections table into key ranges and reads them concurrently over a small pool of connections.
+ * <p>
+ * Every range is read into its own bounded queue and the rows are handed out range by range,
+ * so the rows come in key order and get the same numbers on every run. A range is read {@code pageSize} rows
+ * per query, the next page starting after the last key of the previous one, and a connection is only taken
+ * for the query: a range waiting for its queue to be taken from holds no connection and no open result set,
+ * which the server would abort after net_write_timeout.
+ */
+@Slf4j
+public class PartitionedMySqlInputSource implements InputSource {
+    private static final Object END = new Object();
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final BlockingQueue<Connection> pool;
+    private final ExecutorService executor;
+    private final List<BlockingQueue<Object>> partitions = new ArrayList<>();
+
+    private int currentPartition = 0;
+    private int rowNum = 0;
+
+    /**
+     * @param conditions "WHERE" part of the query, without the WHERE keyword
+     * @param keyColumn  unique numeric column to split the table by
+     */
+    public PartitionedMySqlInputSource(String dbUrl, String dbUser, String dbPass, String table, String conditions,
+                                       String keyColumn, int partitionsCount, int connectionsCount,
+                                       int pageSize, int queueCapacity) throws IOException {
+        this.pool = new ArrayBlockingQueue<>(connectionsCount);
+        this.executor = Executors.newFixedThreadPool(connectionsCount, r -> {
+            Thread thread = new Thread(r, "partition-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (int c = 0; c < connectionsCount; c++) {
+                Connection conn = getConnection(dbUrl, dbUser, dbPass);
+                connections.add(conn);
+                pool.add(conn);
+            }
+
+            long[] bounds = keyBounds(connections.get(0), table, keyColumn);
+            if (bounds == null) {
+                log.info("{} is empty.", table);
+                return;
+            }
+
+            String query = "SELECT " + keyColumn + ", " + MySqlInputSource.COLUMNS + " FROM " + table +
+                    " WHERE " + keyColumn + " > ? AND " + keyColumn + " < ? " +
+                    "AND (" + conditions + ") ORDER BY " + keyColumn + " LIMIT " + pageSize;
+            log.debug(query);
+
+            long step = (bounds[1] - bounds[0]) / partitionsCount + 1;
+            for (long start = bounds[0]; start <= bounds[1]; start += step) {
+                long from = start;
+                long to = Math.min(start + step, bounds[1] + 1);
+                BlockingQueue<Object> partition = new ArrayBlockingQueue<>(queueCapacity);
+                partitions.add(partition);
+                executor.execute(() -> readPartition(query, from, to, pageSize, partition));
+            }
+            log.info("reading {} key ranges of {} over {} connections.", partitions.size(), table, connectionsCount);
+        } catch (SQLException e) {
+            close();
+            throw new IOException("issue when splitting the corrections", e);
+        }
+    }
+
+    private static long[] keyBounds(Connection conn, String table, String keyColumn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + table)) {
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return null;
+            }
+            return new long[]{min, rs.getLong(2)};
+        }
+    }
+
+    private void readPartition(String query, long from, long to, int pageSize, BlockingQueue<Object> partition) {
+        try {
+            List<InputRow> page = new ArrayList<>(pageSize);
+            long lastKey = from - 1;
+            do {
+                page.clear();
+                lastKey = readPage(query, lastKey, to, page);
+                for (InputRow row : page) {
+                    partition.put(row);
+                }
+            } while (page.size() == pageSize);
+            partition.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            log.error("Error! issue when reading keys [{}, {}).", from, to, e);
+            try {
+                partition.put(new IOException("issue when reading keys [" + from + ", " + to + ")", e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reads the rows with keys after {@code lastKey} and before {@code to} of the next page.
+     *
+     * @return the key of the last row read, {@code lastKey} if there were none
+     */
+    private long readPage(String query, long lastKey, long to, List<InputRow> page)
+            throws SQLException, InterruptedException {
+        Connection conn = pool.take();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setLong(1, lastKey);
+            stmt.setLong(2, to);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lastKey = rs.getLong(1);
+                    // numbered when handed out
+                    page.add(MySqlInputSource.toInputRow(0, rs));
+                }
+            }
+        } finally {
+            pool.offer(conn);
+        }
+        return lastKey;
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        while (currentPartition < partitions.size()) {
+            Object item;
+            try {
+                item = partitions.get(currentPartition).take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted when reading row " + (rowNum + 1), e);
+            }
+
+            if (item == END) {
+                currentPartition++;
+                continue;
+            }
+            if (item instanceof IOException) {
+                throw (IOException) item;
+            }
+
+            rowNum++;
+            return ((InputRow) item).withRowNum(rowNum);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        SQLException error = null;
+        for (Connection conn : connections) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw new IOException(error);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.oserikov.languagetool.DBUtils.*;
+
+/**
+ * Reads the corrections table in key order, {@code batchSize} rows per query, and then keeps polling it
+ * for rows with greater keys.
+ * <p>
+ * The key of a row is its position, so a checkpoint tells where to go on after a restart.
+ * Only rows getting ever greater keys are seen, e.g. an auto-increment key of a table which is only inserted into.
+ */
+@Slf4j
+public class PollingMySqlInputSource implements FollowingInputSource {
+    private final Connection conn;
+    private final PreparedStatement stmt;
+    private final long pollIntervalMs;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private long lastKey;
+    private int rowNum;
+    private Iterator<InputRow> batch = Collections.emptyIterator();
+
+    /**
+     * @param conditions "WHERE" part of the query, without the WHERE keyword
+     * @param keyColumn  unique numeric column growing with every insert
+     * @param lastKey    key of the last row already read, Long.MIN_VALUE to read the whole table
+     * @param rowNum     number of rows already read
+     */
+    public PollingMySqlInputSource(String dbUrl, String dbUser, String dbPass, String table, String conditions,
+                                   String keyColumn, long lastKey, int rowNum, int batchSize,
+                                   long pollIntervalMs) throws IOException {
+        String query = "SELECT " + keyColumn + ", " + MySqlInputSource.COLUMNS + " FROM " + table +
+                " WHERE " + keyColumn + " > ? AND (" + conditions + ") ORDER BY " + keyColumn + " LIMIT " + batchSize;
+        log.debug(query);
+        try {
+            this.conn = getConnection(dbUrl, dbUser, dbPass);
+            this.stmt = conn.prepareStatement(query);
+        } catch (SQLException e) {
+            throw new IOException("issue when preparing the corrections query", e);
+        }
+        this.lastKey = lastKey;
+        this.rowNum = rowNum;
+        this.pollIntervalMs = pollIntervalMs;
+        log.info("Following {} after {} {}, row {}. ...", table, keyColumn, lastKey, rowNum + 1);
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        while (!batch.hasNext()) {
+            if (stopped.getCount() == 0) {
+                return null;
+            }
+            List<InputRow> rows = fetch();
+            if (rows.isEmpty()) {
+                try {
+                    stopped.await(pollIntervalMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted when waiting for new rows", e);
+                }
+            }
+            batch = rows.iterator();
+        }
+        return batch.next();
+    }
+
+    private List<InputRow> fetch() throws IOException {
+        List<InputRow> rows = new ArrayList<>();
+        try {
+            stmt.setLong(1, lastKey);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lastKey = rs.getLong(1);
+                    rowNum++;
+                    rows.add(MySqlInputSource.toInputRow(rowNum, rs, lastKey));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("issue when reading the corrections after key " + lastKey, e);
+        }
+        return rows;
+    }
+
+    @Override
+    public void stop() {
+        stopped.countDown();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        try {
+            stmt.close();
+            conn.close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+}
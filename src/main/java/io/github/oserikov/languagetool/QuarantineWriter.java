@@ -0,0 +1,98 @@
+package io.github.oserikov.languagetool;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the rows abandoned for taking too long, so they can be replayed later.
+ * <p>
+ * The file is in the input format of {@link TsvInputSource}: the seven input fields, escaped the way
+ * {@link TsvRecordReader} unescapes them, followed by the row number and the milliseconds the row ran before
+ * it was abandoned. The readers ignore the extra fields, so the file can be used as the input file as it is.
+ * <p>
+ * A {@link Checkpoint} records the length of the file. Resuming from it cuts the file back to that length,
+ * so the rows quarantined after the checkpoint, which are processed again, are not quarantined twice.
+ */
+public class QuarantineWriter implements Closeable {
+    private final FileChannel channel;
+    private final Writer out;
+
+    /**
+     * @param length bytes quarantined by an earlier run to keep, 0 to start a new file
+     */
+    public QuarantineWriter(String fileName, long length) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(length);
+        channel.position(length);
+        this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+    }
+
+    public void write(InputRow row, long elapsedMs) throws IOException {
+        writeField(row.getSentence());
+        out.write('\t');
+        writeField(row.getCorrection());
+        out.write('\t');
+        writeField(row.getCovered());
+        out.write('\t');
+        writeField(row.getReplacement());
+        out.write('\t');
+        writeField(String.valueOf(row.getSuggestionPos()));
+        out.write('\t');
+        writeField(row.getRuleId());
+        out.write('\t');
+        writeField(row.getLanguage());
+        out.write('\t');
+        out.write(String.valueOf(row.getRowNum()));
+        out.write('\t');
+        out.write(String.valueOf(elapsedMs));
+        out.write('\n');
+        // quarantined rows are rare, and they are wanted most when the run does not finish
+        out.flush();
+    }
+
+    /**
+     * Flushes the file to the disk, for a checkpoint of {@link #length()}.
+     */
+    public void sync() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    /**
+     * @return bytes in the file, every written row included
+     */
+    public long length() throws IOException {
+        return channel.position();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t': out.write("\\t"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\\': out.write("\\\\"); break;
+                // a quote would start a quoted field
+                case '"': out.write("\\\""); break;
+                default: out.write(c);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
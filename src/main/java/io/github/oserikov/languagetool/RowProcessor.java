@@ -0,0 +1,105 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns a single corrections row into feature rows. Its {@link SuggestionSource} owns JLanguageTool instances,
+ * so one processor must only be used by one thread at a time.
+ */
+@Slf4j
+public class RowProcessor {
+    private final SuggestionSource suggestionSource;
+    private final int contextLength;
+    private final Metrics metrics;
+
+    public RowProcessor(SuggestionSource suggestionSource, int contextLength) {
+        this(suggestionSource, contextLength, new Metrics());
+    }
+
+    public RowProcessor(SuggestionSource suggestionSource, int contextLength, Metrics metrics) {
+        this.suggestionSource = suggestionSource;
+        this.contextLength = contextLength;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Tells the suggestion source which rows come next, so it can check their sentences together.
+     */
+    public void prefetch(List<InputRow> rows) {
+        List<SuggestionRequest> requests = new ArrayList<>(rows.size());
+        for (InputRow row : rows) {
+            SuggestionRequest request = locate(row);
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        suggestionSource.prefetch(requests);
+    }
+
+    /**
+     * @return the error of the row with its context, null if the error is not found in the sentence
+     */
+    private SuggestionRequest locate(InputRow row) {
+        String sentence = row.getSentence();
+        String covered = row.getCovered();
+        int sentencesDifferenceCharIdx = Utils.firstDifferencePosition(sentence, row.getCorrection());
+        if (sentencesDifferenceCharIdx == -1) {
+            return null;
+        }
+        int errorStartIdx = Utils.startOfErrorString(sentence, covered, sentencesDifferenceCharIdx);
+        if (errorStartIdx == -1) {
+            return null;
+        }
+        int errorEndIdx = errorStartIdx + covered.length();
+        return new SuggestionRequest(row.getRuleId(), sentence, errorStartIdx, covered,
+                Utils.scanLeftContext(sentence, errorStartIdx, errorEndIdx, contextLength),
+                Utils.scanRightContext(sentence, errorStartIdx, errorEndIdx, contextLength));
+    }
+
+    /**
+     * Appends the row and its feature rows to the batch.
+     */
+    public void processRow(InputRow row, FeaturesBatch batch) throws IOException {
+        String sentence = row.getSentence();
+        String covered = row.getCovered();
+        String replacement = row.getReplacement();
+        int suggestionPos = row.getSuggestionPos();
+
+        long contextStart = System.nanoTime();
+        SuggestionRequest request = locate(row);
+        metrics.stage(Metrics.Stage.CONTEXT, System.nanoTime() - contextStart);
+
+        batch.addRow(row.getRowNum(), row.getRuleId(), row.getLanguage(),
+                request == null ? "" : request.getLeftContext(), request == null ? "" : request.getRightContext(), covered);
+        int userFeature = batch.addFeature(replacement, suggestionPos, suggestionPos != 99);
+
+        List<String> replacementsSuggestedByLT = Collections.emptyList();
+        if (request != null) {
+            // the checks are timed by the source, cache hits are not checks
+            replacementsSuggestedByLT = suggestionSource.suggestions(request.getRuleId(), sentence,
+                    request.getErrorStartIdx(), covered, request.getLeftContext(), request.getRightContext());
+        }
+        else {
+            log.warn("Sentence not processed: {}", sentence);
+        }
+        for (int i = 0; i < replacementsSuggestedByLT.size(); i++) {
+            String processingReplacement = replacementsSuggestedByLT.get(i);
+            if (processingReplacement.equals(replacement)){
+                if(batch.replacementPosition(userFeature) != 99){
+                    batch.setReplacementPosition(userFeature, i);
+                }
+            }
+            else {
+                batch.addFeature(processingReplacement, i, false);
+            }
+        }
+        if (replacementsSuggestedByLT.size() == 0 && batch.replacementPosition(userFeature) != 99){
+            batch.setReplacementPosition(userFeature, 0);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.oserikov.languagetool;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * What one shard of a sharded run wrote: which input it split, the range and counts of its rows,
+ * and the size and CRC32 of its output file, which lies next to the manifest. See {@link Shards}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ShardManifest {
+    private final int shard;
+    private final int shards;
+    private final int startingRowNum;
+    private final int inputRows;     // number of the last input row, in any shard
+    private final long inputSize;    // bytes of the tsv input, -1 for the database
+    private final String outputFile; // file name only
+    private final String outputFormat;
+    private final long outputSize;
+    private final long outputCrc32;
+    private final int rows;          // source rows in the output
+    private final long features;     // feature rows in the output
+    private final int firstRow;      // -1 if the output is empty
+    private final int lastRow;
+    private final int errors;
+
+    /**
+     * Writes the manifest to a temporary file and renames it, so a manifest is never half written.
+     */
+    public void save(String fileName) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("shard", Integer.toString(shard));
+        properties.setProperty("shards", Integer.toString(shards));
+        properties.setProperty("starting_row_num", Integer.toString(startingRowNum));
+        properties.setProperty("input_rows", Integer.toString(inputRows));
+        properties.setProperty("input_size", Long.toString(inputSize));
+        properties.setProperty("output_file", outputFile);
+        properties.setProperty("output_format", outputFormat);
+        properties.setProperty("output_size", Long.toString(outputSize));
+        properties.setProperty("output_crc32", Long.toString(outputCrc32));
+        properties.setProperty("rows", Integer.toString(rows));
+        properties.setProperty("features", Long.toString(features));
+        properties.setProperty("first_row", Integer.toString(firstRow));
+        properties.setProperty("last_row", Integer.toString(lastRow));
+        properties.setProperty("errors", Integer.toString(errors));
+
+        Utils.writeAtomically(fileName, out -> properties.store(out, "shard " + shard + " of " + shards));
+    }
+
+    public static ShardManifest load(String fileName) throws IOException {
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(fileName)) {
+            properties.load(in);
+        }
+        try {
+            return new ShardManifest(
+                    Integer.parseInt(properties.getProperty("shard")),
+                    Integer.parseInt(properties.getProperty("shards")),
+                    Integer.parseInt(properties.getProperty("starting_row_num")),
+                    Integer.parseInt(properties.getProperty("input_rows")),
+                    Long.parseLong(properties.getProperty("input_size")),
+                    required(properties, "output_file"),
+                    required(properties, "output_format"),
+                    Long.parseLong(properties.getProperty("output_size")),
+                    Long.parseLong(properties.getProperty("output_crc32")),
+                    Integer.parseInt(properties.getProperty("rows")),
+                    Long.parseLong(properties.getProperty("features")),
+                    Integer.parseInt(properties.getProperty("first_row")),
+                    Integer.parseInt(properties.getProperty("last_row")),
+                    Integer.parseInt(properties.getProperty("errors")));
+        } catch (NumberFormatException e) {
+            throw new IOException("not a shard manifest: " + fileName, e);
+        }
+    }
+
+    private static String required(Properties properties, String key) throws IOException {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IOException("no " + key + " in the shard manifest");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.oserikov.languagetool;
+
+import java.io.IOException;
+
+/**
+ * Passes on the rows of one shard out of {@code shards}, keeping their numbers in the whole input.
+ * <p>
+ * A row goes to shard {@code hash % shards}, where the hash is 64 bit FNV-1a of the row's seven input fields,
+ * so every process sharding the same input agrees on the split without talking to the others,
+ * and the same row lands in the same shard on every run.
+ */
+public class ShardedInputSource implements InputSource {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final InputSource source;
+    private final int shard;
+    private final int shards;
+    private int lastRowNum;
+
+    /**
+     * @param lastRowNum number of the row before the first one the source reads, when resuming
+     */
+    public ShardedInputSource(InputSource source, int shard, int shards, int lastRowNum) {
+        if (shards < 1 || shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("no shard " + shard + " of " + shards);
+        }
+        this.source = source;
+        this.shard = shard;
+        this.shards = shards;
+        this.lastRowNum = lastRowNum;
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        InputRow row;
+        while ((row = source.next()) != null) {
+            lastRowNum = row.getRowNum();
+            if (shardOf(row, shards) == shard) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of the last row read from the input, in any shard
+     */
+    public int getLastRowNum() {
+        return lastRowNum;
+    }
+
+    public static int shardOf(InputRow row, int shards) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, row.getSentence());
+        hash = hash(hash, row.getCorrection());
+        hash = hash(hash, row.getCovered());
+        hash = hash(hash, row.getReplacement());
+        hash = hash(hash, String.valueOf(row.getSuggestionPos()));
+        hash = hash(hash, row.getRuleId());
+        hash = hash(hash, row.getLanguage());
+        return (int) Long.remainderUnsigned(hash, shards);
+    }
+
+    /**
+     * Hashes the UTF-16 code units of the value, low byte first, and a terminator, which tells null from "".
+     */
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        hash = (hash ^ (value == null ? 0xFE : 0xFF)) * FNV_PRIME;
+        return hash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
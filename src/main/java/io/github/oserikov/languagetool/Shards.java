@@ -0,0 +1,263 @@
+package io.github.oserikov.languagetool;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sharded runs: every shard process reads the whole input, keeps its rows (see {@link ShardedInputSource})
+ * and describes its output in a {@link ShardManifest}. The rows keep their numbers in the whole input,
+ * so merging the outputs by row number gives the rows and numbering of a single process run.
+ */
+public class Shards {
+    private static final int MERGE_BATCH_ROWS = 1024;
+    private static final int MERGE_BUFFER_SIZE = 1 << 20;
+    private static final int MERGE_BUFFERS = 4;
+
+    private Shards() {
+    }
+
+    /**
+     * @return the file name of a shard's own copy of a per-run file
+     */
+    public static String shardFileName(String fileName, int shard, int shards) {
+        return fileName + ".shard-" + shard + "-of-" + shards;
+    }
+
+    /**
+     * Reads the finished output of a shard back to count its rows and compute its checksum.
+     */
+    public static ShardManifest describe(int shard, int shards, int startingRowNum, int inputRows, long inputSize,
+                                         int errors, String outputFileName, String outputFormat) throws IOException {
+        Path output = Paths.get(outputFileName);
+        CRC32 crc = new CRC32();
+        int rows = 0;
+        long features = 0;
+        int firstRow = -1;
+        int lastRow = -1;
+        try (CheckedInputStream checked = new CheckedInputStream(new FileInputStream(output.toFile()), crc);
+             FeaturesReader reader = openReader(checked, outputFileName, outputFormat)) {
+            FeaturesBatch batch = new FeaturesBatch();
+            while (reader.next(batch)) {
+                for (int r = 0; r < batch.rows(); r++) {
+                    if (batch.rowNum(r) <= lastRow) {
+                        throw new IOException("row " + batch.rowNum(r) + " after row " + lastRow + " in " + outputFileName);
+                    }
+                    lastRow = batch.rowNum(r);
+                    if (firstRow == -1) {
+                        firstRow = lastRow;
+                    }
+                }
+                rows += batch.rows();
+                features += batch.features();
+            }
+            drain(checked);
+        }
+        return new ShardManifest(shard, shards, startingRowNum, inputRows, inputSize, output.getFileName().toString(),
+                outputFormat, Files.size(output), crc.getValue(), rows, features, firstRow, lastRow, errors);
+    }
+
+    /**
+     * Checks that the manifests are all the shards of one run and that their outputs are intact,
+     * and merges the outputs by row number into one file in the shards' format, gzipped if its name ends with .gz.
+     *
+     * @return the number of source rows written
+     */
+    public static int merge(List<String> manifestFileNames, String outputFileName, int columnarBlockRows) throws IOException {
+        List<ShardManifest> manifests = new ArrayList<>();
+        List<Path> outputs = new ArrayList<>();
+        for (String fileName : manifestFileNames) {
+            ShardManifest manifest = ShardManifest.load(fileName);
+            manifests.add(manifest);
+            outputs.add(Paths.get(fileName).toAbsolutePath().resolveSibling(manifest.getOutputFile()));
+        }
+        validate(manifests, outputs);
+
+        ShardManifest first = manifests.get(0);
+        Path output = Paths.get(outputFileName).toAbsolutePath();
+        Path tmp = output.resolveSibling(output.getFileName() + ".tmp");
+        List<Cursor> cursors = new ArrayList<>();
+        int rows = 0;
+        try {
+            AsyncFileOutput out = new AsyncFileOutput(FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                    outputFileName.endsWith(".gz"), MERGE_BUFFER_SIZE, MERGE_BUFFERS);
+            try (FeaturesWriter writer = openWriter(out, first.getOutputFormat(), columnarBlockRows)) {
+                PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparingInt(Cursor::rowNum));
+                for (int s = 0; s < manifests.size(); s++) {
+                    Cursor cursor = new Cursor(manifests.get(s), outputs.get(s));
+                    cursors.add(cursor);
+                    if (cursor.advance()) {
+                        heads.add(cursor);
+                    }
+                }
+
+                FeaturesBatch merged = new FeaturesBatch(MERGE_BATCH_ROWS, MERGE_BATCH_ROWS * 8);
+                int lastRow = -1;
+                while (!heads.isEmpty()) {
+                    Cursor cursor = heads.poll();
+                    if (cursor.rowNum() <= lastRow) {
+                        throw new IOException("row " + cursor.rowNum() + " is in two shards or out of order in "
+                                + cursor.output);
+                    }
+                    lastRow = cursor.rowNum();
+                    merged.addRow(cursor.batch, cursor.row);
+                    rows++;
+                    if (merged.rows() == MERGE_BATCH_ROWS) {
+                        writer.write(merged);
+                        merged.clear();
+                    }
+                    if (cursor.advance()) {
+                        heads.add(cursor);
+                    }
+                }
+                writer.write(merged);
+                writer.flush();
+                out.force();
+            }
+
+            for (Cursor cursor : cursors) {
+                cursor.finish();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.reader.close();
+            }
+        }
+        Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    private static void validate(List<ShardManifest> manifests, List<Path> outputs) throws IOException {
+        if (manifests.isEmpty()) {
+            throw new IOException("no shard manifests");
+        }
+        ShardManifest first = manifests.get(0);
+        if (manifests.size() != first.getShards()) {
+            throw new IOException(manifests.size() + " manifests for " + first.getShards() + " shards");
+        }
+
+        boolean[] seen = new boolean[first.getShards()];
+        long rowsAndErrors = 0;
+        for (int s = 0; s < manifests.size(); s++) {
+            ShardManifest manifest = manifests.get(s);
+            if (manifest.getShards() != first.getShards()
+                    || manifest.getStartingRowNum() != first.getStartingRowNum()
+                    || manifest.getInputRows() != first.getInputRows()
+                    || manifest.getInputSize() != first.getInputSize()
+                    || !manifest.getOutputFormat().equals(first.getOutputFormat())) {
+                throw new IOException("shard " + manifest.getShard() + " is from another run than shard "
+                        + first.getShard() + ": " + manifest + ", " + first);
+            }
+            if (manifest.getShard() < 0 || manifest.getShard() >= seen.length || seen[manifest.getShard()]) {
+                throw new IOException("shard " + manifest.getShard() + " of " + seen.length + " is given twice or unknown");
+            }
+            seen[manifest.getShard()] = true;
+
+            long size = Files.exists(outputs.get(s)) ? Files.size(outputs.get(s)) : -1;
+            if (size != manifest.getOutputSize()) {
+                throw new IOException(outputs.get(s) + " has " + size + " bytes, its manifest says "
+                        + manifest.getOutputSize());
+            }
+            rowsAndErrors += manifest.getRows() + manifest.getErrors();
+        }
+
+        // every input row from the starting one on is either written or an error in exactly one shard
+        long inputRows = Math.max(0, first.getInputRows() - first.getStartingRowNum() + 1);
+        if (rowsAndErrors != inputRows) {
+            throw new IOException("the shards wrote or failed " + rowsAndErrors + " rows of " + inputRows + " input rows");
+        }
+    }
+
+    private static FeaturesReader openReader(InputStream in, String fileName, String format) throws IOException {
+        // the checksum is of the file, the gzipped one included
+        InputStream buffered = new BufferedInputStream(in, 1 << 16);
+        if (fileName.endsWith(".gz")) {
+            buffered = new GZIPInputStream(buffered, 1 << 16);
+        }
+        if (Main.COLUMNAR_OUTPUT_FORMAT.equals(format)) {
+            return new ColumnarFeaturesReader(buffered);
+        }
+        return new CsvFeaturesReader(new InputStreamReader(buffered, StandardCharsets.UTF_8));
+    }
+
+    private static FeaturesWriter openWriter(AsyncFileOutput out, String format, int columnarBlockRows) throws IOException {
+        // the output is buffered already
+        if (Main.COLUMNAR_OUTPUT_FORMAT.equals(format)) {
+            return new ColumnarFeaturesWriter(out, columnarBlockRows, false);
+        }
+        return new CsvFeaturesWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        while (in.read(buffer) != -1) {
+            // only the checksum is wanted
+        }
+    }
+
+    /**
+     * The next source row of one shard's output.
+     */
+    private static class Cursor {
+        private final ShardManifest manifest;
+        private final Path output;
+        private final CRC32 crc = new CRC32();
+        private final CheckedInputStream checked;
+        private final FeaturesReader reader;
+        private final FeaturesBatch batch = new FeaturesBatch();
+        private int row = 0;
+        private int rows = 0;
+
+        private Cursor(ShardManifest manifest, Path output) throws IOException {
+            this.manifest = manifest;
+            this.output = output;
+            this.checked = new CheckedInputStream(new FileInputStream(output.toFile()), crc);
+            this.reader = openReader(checked, output.toString(), manifest.getOutputFormat());
+        }
+
+        private boolean advance() throws IOException {
+            row++;
+            while (row >= batch.rows()) {
+                if (!reader.next(batch)) {
+                    return false;
+                }
+                row = 0;
+            }
+            rows++;
+            return true;
+        }
+
+        private int rowNum() {
+            return batch.rowNum(row);
+        }
+
+        private void finish() throws IOException {
+            drain(checked);
+            if (crc.getValue() != manifest.getOutputCrc32() || rows != manifest.getRows()) {
+                throw new IOException(String.format("%s has %d rows and CRC32 %d, its manifest says %d rows and CRC32 %d",
+                        output, rows, crc.getValue(), manifest.getRows(), manifest.getOutputCrc32()));
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.languagetool.JLanguageTool;
+import org.languagetool.Language;
+import org.languagetool.languagemodel.LanguageModel;
+import org.languagetool.languagemodel.LuceneLanguageModel;
+import org.languagetool.rules.Rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide n-gram language models.
+ * <p>
+ * {@link JLanguageTool#activateLanguageModelRules(File)} opens the Lucene 1/2/3-gram indexes for every instance
+ * it is called on. Here every index directory is opened once (Lucene memory-maps it on 64-bit JVMs)
+ * and the read-only model is shared by all the JLanguageTool instances of all the workers.
+ */
+@Slf4j
+public class SharedLanguageModels {
+    private static final Map<File, LanguageModel> models = new ConcurrentHashMap<>();
+    private static final AtomicInteger reuses = new AtomicInteger();
+
+    /**
+     * Adds the n-gram rules of the language to the given instance, the same rules
+     * {@link JLanguageTool#activateLanguageModelRules(File)} would add.
+     */
+    public static void activateLanguageModelRules(JLanguageTool lt, File ngramsDir) throws IOException {
+        Language language = lt.getLanguage();
+        LanguageModel languageModel = get(new File(ngramsDir, language.getShortCode()));
+        if (languageModel == null) {
+            log.debug("no n-gram data for {}.", language.getShortCode());
+            return;
+        }
+
+        List<Rule> rules = language.getRelevantLanguageModelRules(JLanguageTool.getMessageBundle(language), languageModel);
+        for (Rule rule : rules) {
+            lt.addRule(rule);
+        }
+        log.info("n-gram data loaded.");
+    }
+
+    private static LanguageModel get(File indexDir) throws IOException {
+        if (!indexDir.isDirectory()) {
+            return null;
+        }
+        File key = indexDir.getCanonicalFile();
+
+        LanguageModel languageModel = models.get(key);
+        if (languageModel != null) {
+            reuses.incrementAndGet();
+            return languageModel;
+        }
+
+        synchronized (models) {
+            languageModel = models.get(key);
+            if (languageModel == null) {
+                long start = System.currentTimeMillis();
+                languageModel = new LuceneLanguageModel(key);
+                models.put(key, languageModel);
+                log.info("n-gram index {} opened in {} ms.", key, System.currentTimeMillis() - start);
+            } else {
+                reuses.incrementAndGet();
+            }
+        }
+        return languageModel;
+    }
+
+    public static void logStats() {
+        Runtime runtime = Runtime.getRuntime();
+        log.info("n-gram indexes opened: {}, reused: {} times. heap used: {} MB.", models.size(), reuses.get(),
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.languagetool.AnalyzedSentence;
+import org.languagetool.JLanguageTool;
+import org.languagetool.rules.Rule;
+import org.languagetool.rules.RuleMatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs only the rule named by the row's rule id (MORFOLOGIK_RULE_*, GERMAN_SPELLER_RULE, FR_SPELLING_RULE, ...)
+ * instead of the whole rule set, whose other matches would be thrown away anyway.
+ * <p>
+ * Rows whose rule id is not a rule of the resolved language (e.g. HUNSPELL_RULE checked with the default
+ * language) fall back to the full check.
+ */
+@Slf4j
+public class SpellerOnlySuggestionSource implements SuggestionSource {
+    private final LanguageRegistry languages;
+    private final SuggestionSource fallback;
+    private final Map<String, Optional<Rule>> rules = new HashMap<>();
+
+    public SpellerOnlySuggestionSource(LanguageRegistry languages) {
+        this.languages = languages;
+        this.fallback = new FullCheckSuggestionSource(languages);
+    }
+
+    @Override
+    public List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                                    String leftContext, String rightContext) throws IOException {
+        JLanguageTool lt = languages.get(ruleId);
+        Optional<Rule> rule = rules.computeIfAbsent(ruleId, id -> findRule(lt, id));
+        if (!rule.isPresent()) {
+            return fallback.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext);
+        }
+
+        List<String> suggestions = new ArrayList<>();
+        AnalyzedSentence analyzedSentence = lt.getAnalyzedSentence(sentence);
+        for (RuleMatch match : rule.get().match(analyzedSentence)) {
+            if (match.getFromPos() == errorStartIdx && match.getToPos() == errorStartIdx + covered.length()) {
+                suggestions.addAll(match.getSuggestedReplacements());
+            }
+        }
+        return suggestions;
+    }
+
+    private static Optional<Rule> findRule(JLanguageTool lt, String ruleId) {
+        for (Rule rule : lt.getAllActiveRules()) {
+            if (rule.getId().equals(ruleId)) {
+                return Optional.of(rule);
+            }
+        }
+        log.warn("{} is not a rule of {}, the full check is used for it.", ruleId, lt.getLanguage().getShortCodeWithCountryAndVariant());
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.oserikov.languagetool;
+
+import lombok.Value;
+
+/**
+ * The error of a row located in its sentence, the arguments of {@link SuggestionSource#suggestions}.
+ */
+@Value
+public class SuggestionRequest {
+    String ruleId;
+    String sentence;
+    int errorStartIdx;
+    String covered;
+    String leftContext;
+    String rightContext;
+}
@@ -0,0 +1,19 @@
+package io.github.oserikov.languagetool;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Gives the replacements LanguageTool suggests for the error {@code covered} found at {@code errorStartIdx}.
+ */
+public interface SuggestionSource {
+    List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                             String leftContext, String rightContext) throws IOException;
+
+    /**
+     * Announces the rows about to be processed, so that a source can check their sentences together.
+     * Replaces the rows announced before.
+     */
+    default void prefetch(List<SuggestionRequest> requests) {
+    }
+}
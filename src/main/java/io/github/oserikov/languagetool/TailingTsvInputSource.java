@@ -0,0 +1,193 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the corrections dump like {@link TsvInputSource} and then keeps reading the records appended to it.
+ * <p>
+ * Only complete records are read: the file is read up to its last line end which is not escaped,
+ * and a quoted field running past it is left for the next poll, so a record being written is never
+ * read half. Row numbers and positions continue the ones of the rows already read, as with {@link TsvInputSource}.
+ * <p>
+ * A malformed record fails like it does with {@link TsvInputSource}: waiting for more of it would not fix it.
+ */
+@Slf4j
+public class TailingTsvInputSource implements FollowingInputSource {
+    private static final int SCAN_BLOCK_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final long pollIntervalMs;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    // the blocks scanned for the last line end, and the ones before a run of backslashes reaching a block's start
+    private final ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+    private final ByteBuffer before = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+
+    private int rowNum;
+    private long offset;      // end of the last record read
+    private long scannedEnd;  // end of the complete lines handed to the current reader
+    private TsvRecordReader reader;
+
+    /**
+     * @param offset byte offset of the first record to read
+     * @param rowNum number of rows before that offset
+     */
+    public TailingTsvInputSource(String fileName, long offset, int rowNum, long pollIntervalMs) throws IOException {
+        log.info("Following {} from byte {}, row {}. ...", fileName, offset, rowNum + 1);
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        this.offset = offset;
+        this.scannedEnd = offset;
+        this.rowNum = rowNum;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        while (stopped.getCount() > 0) {
+            if (reader != null) {
+                String[] fields;
+                try {
+                    fields = reader.next();
+                } catch (EOFException e) {
+                    // a quoted field goes on after the last complete line, the rest is not written yet
+                    log.debug("incomplete record at byte {}: {}", offset, e.getMessage());
+                    fields = null;
+                } catch (IOException e) {
+                    log.error("Error! malformed record at byte {}, it can't be completed by appending to the input.",
+                            offset);
+                    throw new IOException("malformed record at byte " + offset, e);
+                }
+                if (fields != null) {
+                    rowNum++;
+                    offset = reader.offset();
+                    return TsvInputSource.toInputRow(rowNum, fields, offset);
+                }
+                reader = null;
+            }
+
+            long size = channel.size();
+            if (size < offset) {
+                throw new IOException("the input shrank to " + size + " bytes, " + offset + " bytes were read");
+            }
+            long end = completeLinesEnd(size);
+            if (end > scannedEnd) {
+                scannedEnd = end;
+                reader = new TsvRecordReader(new RegionInputStream(channel, offset, end), offset);
+                continue;
+            }
+
+            try {
+                stopped.await(pollIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted when waiting for new rows", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the offset right after the last line end after {@link #offset} which is not escaped,
+     * or {@link #offset} if there is none
+     */
+    private long completeLinesEnd(long size) throws IOException {
+        long blockEnd = size;
+        while (blockEnd > offset) {
+            long blockStart = Math.max(offset, blockEnd - SCAN_BLOCK_SIZE);
+            read(block, blockStart, blockEnd);
+            for (int i = block.limit() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n' && !escaped(block, blockStart, i)) {
+                    return blockStart + i + 1;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return offset;
+    }
+
+    /**
+     * @return true if an odd number of backslashes precedes the byte {@code i} of the buffer starting at
+     * {@code bufferStart}, the blocks before it are read only if the backslashes reach the buffer's start
+     */
+    private boolean escaped(ByteBuffer buffer, long bufferStart, int i) throws IOException {
+        boolean escaped = false;
+        while (true) {
+            int p = i - 1;
+            for (; p >= 0 && buffer.get(p) == '\\'; p--) {
+                escaped = !escaped;
+            }
+            if (p >= 0 || bufferStart <= offset) {
+                return escaped;
+            }
+            long start = Math.max(offset, bufferStart - SCAN_BLOCK_SIZE);
+            read(before, start, bufferStart);
+            buffer = before;
+            i = before.limit();
+            bufferStart = start;
+        }
+    }
+
+    private void read(ByteBuffer buffer, long start, long end) throws IOException {
+        buffer.clear();
+        buffer.limit((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) == -1) {
+                throw new IOException("the input shrank while reading bytes " + start + " to " + end);
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void stop() {
+        stopped.countDown();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        channel.close();
+    }
+
+    /**
+     * Reads [start, end) of the file.
+     */
+    private static class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private RegionInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.oserikov.languagetool;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Records every call of the wrapped source as a LanguageTool check in the {@link Metrics}.
+ * Wraps the source which actually runs LanguageTool, below the cache, so cache hits don't count as checks.
+ */
+public class TimingSuggestionSource implements SuggestionSource {
+    private final SuggestionSource source;
+    private final Metrics metrics;
+
+    public TimingSuggestionSource(SuggestionSource source, Metrics metrics) {
+        this.source = source;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                                    String leftContext, String rightContext) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return source.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext);
+        } finally {
+            metrics.checked(ruleId, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void prefetch(List<SuggestionRequest> requests) {
+        source.prefetch(requests);
+    }
+}
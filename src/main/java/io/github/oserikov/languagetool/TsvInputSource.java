@@ -0,0 +1,73 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the tab separated UTF-8 corrections dump, possibly starting from a byte offset saved in a {@link Checkpoint}.
+ * Every row carries the offset right after its record as its position.
+ */
+@Slf4j
+public class TsvInputSource implements InputSource {
+    static final String[] HEADERS = {"sentence", "correction", "covered", "replacement", "suggestion_pos", "rule_id", "language"};
+    static final CSVFormat INPUT_FORMAT = CSVFormat.DEFAULT
+            .withHeader(HEADERS)
+            .withDelimiter('\t')
+            .withEscape('\\')
+            .withRecordSeparator('\n');
+
+    private final FileInputStream in;
+    private final TsvRecordReader reader;
+    private final int startingRowNum;
+    private int rowNum;
+
+    public TsvInputSource(String fileName) throws IOException {
+        this(fileName, 0, 0, 1);
+    }
+
+    /**
+     * @param offset         byte offset of the first record to read
+     * @param rowNum         number of rows before that offset
+     * @param startingRowNum rows before this one are skipped without being decoded
+     */
+    public TsvInputSource(String fileName, long offset, int rowNum, int startingRowNum) throws IOException {
+        log.info("Opening {} at byte {}, row {}. ...", fileName, offset, rowNum + 1);
+        this.in = new FileInputStream(fileName);
+        this.in.getChannel().position(offset);
+        this.reader = new TsvRecordReader(in, offset);
+        this.rowNum = rowNum;
+        this.startingRowNum = startingRowNum;
+    }
+
+    @Override
+    public InputRow next() throws IOException {
+        while (rowNum + 1 < startingRowNum) {
+            if (!reader.skip()) {
+                return null;
+            }
+            rowNum++;
+        }
+
+        String[] fields = reader.next();
+        if (fields == null) {
+            return null;
+        }
+        rowNum++;
+        return toInputRow(rowNum, fields, reader.offset());
+    }
+
+    static InputRow toInputRow(int rowNum, String[] fields, long position) throws IOException {
+        if (fields.length < HEADERS.length) {
+            throw new IOException("row " + rowNum + " has " + fields.length + " values, " + HEADERS.length + " expected");
+        }
+        return InputRow.of(rowNum, fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6], position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.oserikov.languagetool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte level reader of the UTF-8 corrections dump which knows the byte offset of every record.
+ * <p>
+ * Splits and unescapes records the same way commons-csv does with {@link TsvInputSource#INPUT_FORMAT}:
+ * tab delimited, {@code \} escapes (\r \n \t \b \f, and the delimiter, escape and quote characters),
+ * fields may be quoted with {@code "} and may span several lines, empty lines are ignored.
+ * The special characters are all ASCII, so they never occur inside multi-byte UTF-8 sequences.
+ */
+public class TsvRecordReader {
+    private static final int EOF = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPos = 0;
+    private int bufferLimit = 0;
+
+    private long offset;
+    private long recordStartOffset;
+
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private final List<String> fields = new ArrayList<>();
+
+    /**
+     * @param startOffset byte offset of the stream start in the file, must be a record boundary
+     */
+    public TsvRecordReader(InputStream in, long startOffset) {
+        this.in = in;
+        this.offset = startOffset;
+        this.recordStartOffset = startOffset;
+    }
+
+    /**
+     * @return byte offset right after the last record read, i.e. where reading can be resumed
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return byte offset of the first byte of the last record read
+     */
+    public long recordStartOffset() {
+        return recordStartOffset;
+    }
+
+    /**
+     * @return the fields of the next record or null at the end of the input
+     * @throws EOFException if the input ends inside a quoted field or an escape sequence
+     */
+    public String[] next() throws IOException {
+        return scanRecord(true) ? fields.toArray(new String[0]) : null;
+    }
+
+    /**
+     * Moves to the next record without decoding its fields.
+     *
+     * @return false at the end of the input
+     */
+    public boolean skip() throws IOException {
+        return scanRecord(false);
+    }
+
+    private boolean scanRecord(boolean decode) throws IOException {
+        fields.clear();
+        fieldLength = 0;
+
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            if (c == '\r' && peek() == '\n') read();
+            c = read();
+        }
+        if (c == EOF) {
+            return false;
+        }
+        recordStartOffset = offset - 1;
+
+        boolean atFieldStart = true;
+        while (true) {
+            if (atFieldStart && c == '"') {
+                c = scanQuoted(decode);
+                atFieldStart = false;
+                continue;
+            }
+            atFieldStart = false;
+
+            if (c == EOF) {
+                endField(decode);
+                return true;
+            } else if (c == '\t') {
+                endField(decode);
+                atFieldStart = true;
+            } else if (c == '\n') {
+                endField(decode);
+                return true;
+            } else if (c == '\r') {
+                if (peek() == '\n') read();
+                endField(decode);
+                return true;
+            } else if (c == '\\') {
+                unescape(decode);
+            } else if (decode) {
+                append(c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Reads a quoted field up to and including the closing quote.
+     *
+     * @return the first character after the closing quote which is not whitespace
+     */
+    private int scanQuoted(boolean decode) throws IOException {
+        while (true) {
+            int c = read();
+            if (c == EOF) {
+                throw new EOFException("EOF reached before encapsulated token finished at byte " + offset);
+            } else if (c == '\\') {
+                unescape(decode);
+            } else if (c == '"') {
+                if (peek() == '"') {
+                    read();
+                    if (decode) append('"');
+                } else {
+                    break;
+                }
+            } else if (decode) {
+                append(c);
+            }
+        }
+
+        int c = read();
+        while (c == ' ' || c == '\u000B' || c == '\f' || c == '\u001C' || c == '\u001D' || c == '\u001E' || c == '\u001F') {
+            c = read();
+        }
+        if (c != EOF && c != '\t' && c != '\n' && c != '\r') {
+            throw new IOException("invalid char between encapsulated token and delimiter at byte " + (offset - 1));
+        }
+        return c;
+    }
+
+    private void unescape(boolean decode) throws IOException {
+        int c = read();
+        if (c == EOF) {
+            throw new EOFException("EOF whilst processing escape sequence at byte " + offset);
+        }
+        if (!decode) return;
+
+        switch (c) {
+            case 'r': append('\r'); break;
+            case 'n': append('\n'); break;
+            case 't': append('\t'); break;
+            case 'b': append('\b'); break;
+            case 'f': append('\f'); break;
+            case '\r': case '\n': case '\f': case '\t': case '\b':
+            case '\\': case '"':
+                append(c);
+                break;
+            default:
+                // commons-csv keeps unknown escape sequences as they are
+                append('\\');
+                append(c);
+        }
+    }
+
+    private void endField(boolean decode) {
+        if (decode) {
+            fields.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+        }
+        fieldLength = 0;
+    }
+
+    private void append(int c) {
+        if (fieldLength == field.length) {
+            byte[] grown = new byte[field.length * 2];
+            System.arraycopy(field, 0, grown, 0, fieldLength);
+            field = grown;
+        }
+        field[fieldLength++] = (byte) c;
+    }
+
+    private int read() throws IOException {
+        if (bufferPos == bufferLimit && !fill()) {
+            return EOF;
+        }
+        offset++;
+        return buffer[bufferPos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (bufferPos == bufferLimit && !fill()) {
+            return EOF;
+        }
+        return buffer[bufferPos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        bufferPos = 0;
+        bufferLimit = read;
+        return true;
+    }
+}
@@ -2,13 +2,36 @@ package io.github.oserikov.languagetool;
 
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Utils {
 
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes the file to a temporary file, syncs it and renames it over the file,
+     * so the file is always either the old or the new one, even after a crash.
+     */
+    public static void writeAtomically(String fileName, ContentWriter content) throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+            content.write(out);
+            out.getFD().sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     public static String leftContext(String originalSentence, int errorStartIdx, String errorString, int contextLength) {
         String regex = repeat(contextLength, "\\w+\\W+") + errorString + "$";
         String stringToSearch = originalSentence.substring(0, errorStartIdx + errorString.length());
@@ -39,14 +62,14 @@ public class Utils {
     public static int startOfErrorString(String sentence, String errorString, int sentencesDifferenceCharIdx) {
         int result = -1;
 
-        List<Integer> possibleIntersections = allIndexesOf(sentence.charAt(sentencesDifferenceCharIdx), errorString);
-        for (int i : possibleIntersections){
-            if (sentencesDifferenceCharIdx - i < 0 || sentencesDifferenceCharIdx - i + errorString.length() > sentence.length()) continue;
-            String possibleErrorString = sentence.substring(sentencesDifferenceCharIdx - i,
-                    sentencesDifferenceCharIdx - i + errorString.length());
+        // every occurrence of the differing char in the error string is a possible alignment, tried in order
+        char differenceChar = sentence.charAt(sentencesDifferenceCharIdx);
+        for (int i = errorString.indexOf(differenceChar); i >= 0; i = errorString.indexOf(differenceChar, i + 1)){
+            int possibleStartIdx = sentencesDifferenceCharIdx - i;
+            if (possibleStartIdx < 0 || possibleStartIdx + errorString.length() > sentence.length()) continue;
 
-            if (possibleErrorString.equals(errorString)){
-                result = sentencesDifferenceCharIdx - i;
+            if (sentence.regionMatches(possibleStartIdx, errorString, 0, errorString.length())){
+                result = possibleStartIdx;
                 break;
             }
         }
@@ -80,14 +103,63 @@ public class Utils {
 
     public static Pair<String, String> extractContext(String sentence, String covered, int errorStartIdx, int contextLength) {
         int errorEndIdx = errorStartIdx + covered.length();
-        String errorString = sentence.substring(errorStartIdx, errorEndIdx);
 
-        String leftContext = getMaximalPossibleLeftContext(sentence, errorStartIdx, errorString, contextLength);
-        String rightContext = getMaximalPossibleRightContext(sentence, errorStartIdx, errorString, contextLength);
+        String leftContext = scanLeftContext(sentence, errorStartIdx, errorEndIdx, contextLength);
+        String rightContext = scanRightContext(sentence, errorStartIdx, errorEndIdx, contextLength);
 
         return Pair.of(leftContext, rightContext);
     }
 
+    /**
+     * Single pass equivalent of {@link #getMaximalPossibleLeftContext}: the error string with up to
+     * {@code contextLength} words before it, or "" if the error doesn't start right after a non-word character.
+     * Words are {@code \w} runs, as in the regexes, but the error string is never interpreted as a regex.
+     */
+    public static String scanLeftContext(String sentence, int errorStartIdx, int errorEndIdx, int contextLength) {
+        int pos = errorStartIdx - 1;
+        if (pos < 0 || isWordChar(sentence.charAt(pos))) {
+            return "";
+        }
+
+        int contextStartIdx = -1;
+        for (int words = 0; words < contextLength; words++) {
+            while (pos >= 0 && !isWordChar(sentence.charAt(pos))) pos--;
+            if (pos < 0) break;
+            while (pos >= 0 && isWordChar(sentence.charAt(pos))) pos--;
+            contextStartIdx = pos + 1;
+        }
+
+        return contextStartIdx == -1 ? "" : sentence.substring(contextStartIdx, errorEndIdx);
+    }
+
+    /**
+     * Single pass equivalent of {@link #getMaximalPossibleRightContext}: the error string with up to
+     * {@code contextLength} words after it, or "" if the error isn't followed by a non-word character.
+     */
+    public static String scanRightContext(String sentence, int errorStartIdx, int errorEndIdx, int contextLength) {
+        int pos = errorEndIdx;
+        if (pos >= sentence.length() || isWordChar(sentence.charAt(pos))) {
+            return "";
+        }
+
+        int contextEndIdx = -1;
+        for (int words = 0; words < contextLength; words++) {
+            while (pos < sentence.length() && !isWordChar(sentence.charAt(pos))) pos++;
+            if (pos >= sentence.length()) break;
+            while (pos < sentence.length() && isWordChar(sentence.charAt(pos))) pos++;
+            contextEndIdx = pos;
+        }
+
+        return contextEndIdx == -1 ? "" : sentence.substring(errorStartIdx, contextEndIdx);
+    }
+
+    /**
+     * Same character class as {@code \w} of {@link Pattern} without UNICODE_CHARACTER_CLASS.
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
 
     private static String findFirstRegexMatch(String regex, String stringToSearch){
         String result = "";
@@ -106,13 +178,5 @@ public class Utils {
         return new String(new char[count]).replace("\0", with);
     }
 
-    private static List<Integer> allIndexesOf(char character, String string){
-        List<Integer> indexes = new ArrayList<>();
-        for (int index = string.indexOf(character); index >= 0; index = string.indexOf(character, index + 1)){
-            indexes.add(index);
-        }
-        return indexes;
-    }
-
 
 }
@@ -0,0 +1,49 @@
+package io.github.oserikov.languagetool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asks both sources, returns the suggestions of the first one and counts the rows where the two differ.
+ * Used to check that a faster source gives exactly the same suggestions as the full check.
+ */
+@Slf4j
+public class VerifyingSuggestionSource implements SuggestionSource {
+    private static final AtomicLong compared = new AtomicLong();
+    private static final AtomicLong mismatches = new AtomicLong();
+
+    private final SuggestionSource source;
+    private final SuggestionSource reference;
+
+    public VerifyingSuggestionSource(SuggestionSource source, SuggestionSource reference) {
+        this.source = source;
+        this.reference = reference;
+    }
+
+    @Override
+    public List<String> suggestions(String ruleId, String sentence, int errorStartIdx, String covered,
+                                    String leftContext, String rightContext) throws IOException {
+        List<String> suggestions = source.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext);
+        List<String> expected = reference.suggestions(ruleId, sentence, errorStartIdx, covered, leftContext, rightContext);
+
+        compared.incrementAndGet();
+        if (!suggestions.equals(expected)) {
+            mismatches.incrementAndGet();
+            log.warn("Suggestions mismatch for {} '{}' at {} in: {}. got: {}, expected: {}",
+                    ruleId, covered, errorStartIdx, sentence, suggestions, expected);
+        }
+        return suggestions;
+    }
+
+    @Override
+    public void prefetch(List<SuggestionRequest> requests) {
+        source.prefetch(requests);
+    }
+
+    public static void logStats() {
+        log.info("suggestions compared for {} rows, {} mismatches.", compared.get(), mismatches.get());
+    }
+}
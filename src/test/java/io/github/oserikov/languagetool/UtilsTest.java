@@ -0,0 +1,113 @@
+package io.github.oserikov.languagetool;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UtilsTest {
+    private static final String[] PIECES = {
+            "word", "a", "B", "x1", "2020", "snake_case", "_",
+            " ", "  ", "\t", "\n", ",", ", ", ".", "...", "!?", "-", "'", "\"", "(", ")", "[", "*", "+", "$", "\\",
+            "\u00E9", "na\u00EFve", "\u0441\u043B\u043E\u0432\u043E", "\u65E5\u672C", "\uD83D\uDE00", "\uD835\uDC00", "\u00A0"
+    };
+
+    private static final Pattern REGEX_META_CHARS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
+    @Test
+    public void errorAtTheStart() {
+        assertSameContexts("word and more words", 0, 4);
+        assertSameContexts(", and more words", 0, 1);
+    }
+
+    @Test
+    public void errorAtTheEnd() {
+        assertSameContexts("some words and word", 15, 19);
+        assertSameContexts("some words and word.", 19, 20);
+        assertSameContexts("some words and word", 19, 19);
+    }
+
+    @Test
+    public void emptyError() {
+        assertSameContexts("some words , and more", 11, 11);
+        assertSameContexts("some words and more", 4, 4);
+        assertSameContexts("some words and more", 0, 0);
+    }
+
+    @Test
+    public void contextLongerThanTheSentence() {
+        String sentence = "one two three";
+        for (int contextLength = 0; contextLength <= 10; contextLength++) {
+            assertSameContexts(sentence, 4, 7, contextLength);
+        }
+    }
+
+    @Test
+    public void nonWordAndNonBmpCharacters() {
+        assertSameContexts("na\u00EFve caf\u00E9 \u043E\u0447\u0435\u043D\u044C \uD83D\uDE00 words", 6, 10);
+        assertSameContexts("the \uD83D\uDE00\uD83D\uDE00 error \uD835\uDC00x here", 4, 8);
+        assertSameContexts("\u65E5\u672C word \u65E5\u672C", 3, 7);
+    }
+
+    @Test
+    public void whitespaceAndPunctuationRuns() {
+        assertSameContexts("one ,  ;\t two  ...  error --  !!  three \n four", 20, 25);
+        assertSameContexts("one ,  ;\t two  ...  error --  !!  three \n four", 16, 19);
+        assertSameContexts("...   ,,,", 3, 6);
+    }
+
+    @Test
+    public void errorStringIsNotARegex() {
+        assertEquals("two (+", Utils.scanLeftContext("one two (+ three four", 8, 10, 1));
+        assertEquals("(+ three", Utils.scanRightContext("one two (+ three four", 8, 10, 1));
+        assertEquals("one two a.b", Utils.scanLeftContext("one two a.b three four", 8, 11, 4));
+        assertEquals("", Utils.scanRightContext("one two a.b three four", 8, 11, 0));
+        assertEquals("two $\\", Utils.scanLeftContext("one two $\\ three four", 8, 10, 1));
+    }
+
+    @Test
+    public void randomSentences() {
+        Random random = new Random(42);
+        int compared = 0;
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sentence = new StringBuilder();
+            int pieces = random.nextInt(12);
+            for (int p = 0; p < pieces; p++) {
+                sentence.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            String s = sentence.toString();
+            int codePoints = s.codePointCount(0, s.length());
+            int start = s.offsetByCodePoints(0, random.nextInt(codePoints + 1));
+            int end = s.offsetByCodePoints(start, random.nextInt(s.codePointCount(start, s.length()) + 1));
+            if (REGEX_META_CHARS.matcher(s.substring(start, end)).find()) {
+                continue;
+            }
+            assertSameContexts(s, start, end, random.nextInt(6));
+            compared++;
+        }
+        assertTrue(compared > 10000);
+    }
+
+    private static void assertSameContexts(String sentence, int errorStartIdx, int errorEndIdx) {
+        for (int contextLength = 0; contextLength <= 4; contextLength++) {
+            assertSameContexts(sentence, errorStartIdx, errorEndIdx, contextLength);
+        }
+    }
+
+    private static void assertSameContexts(String sentence, int errorStartIdx, int errorEndIdx, int contextLength) {
+        // the regex versions take the error string as a regex, so only the error strings without regex
+        // meta characters are compared, the scanners' literal matching is tested in errorStringIsNotARegex
+        String covered = sentence.substring(errorStartIdx, errorEndIdx);
+        String message = String.format("'%s' [%d, %d) context %d", sentence, errorStartIdx, errorEndIdx, contextLength);
+
+        assertEquals("left context of " + message,
+                Utils.getMaximalPossibleLeftContext(sentence, errorStartIdx, covered, contextLength),
+                Utils.scanLeftContext(sentence, errorStartIdx, errorEndIdx, contextLength));
+        assertEquals("right context of " + message,
+                Utils.getMaximalPossibleRightContext(sentence, errorStartIdx, covered, contextLength),
+                Utils.scanRightContext(sentence, errorStartIdx, errorEndIdx, contextLength));
+    }
+}